@@ -0,0 +1,138 @@
+package com.supportportal.utility;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput of each user id scheme into a copy of the user table of the postgres
+ * profile, with the same columns, constraints and indexes, the unique index on user_id
+ * included. The table keeps growing over the iterations, as the real one does.
+ * <p>
+ * Needs a database the application has already created its schema in, reached through the
+ * profile's DATABASE_URL, DB_USERNAME and DB_PASSWORD:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec
+ * </pre>
+ * The score is batches of {@link #BATCH_SIZE} rows per second; the {@code inserted} counter
+ * is the rows per second that actually went in, ids the unique index rejected are counted
+ * under {@code collisions} instead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class UserIdInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"randomNumeric", "randomUuid", "timeOrdered"})
+    public String scheme;
+
+    private Supplier<String> userIds;
+
+    private Connection connection;
+
+    private PreparedStatement insert;
+
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void createTable() throws SQLException {
+        userIds = userIds(scheme);
+        connection = DriverManager.getConnection(
+                environment("DATABASE_URL", "jdbc:postgresql://localhost:5432/supportportal"),
+                environment("DB_USERNAME", "postgres"),
+                environment("DB_PASSWORD", "password"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists user_id_benchmark");
+            statement.execute("create table user_id_benchmark (like \"user\" including all)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("insert into user_id_benchmark (id, user_id, is_active, is_not_locked) " +
+                "values (?, ?, true, true) on conflict do nothing");
+    }
+
+    @TearDown(Level.Trial)
+    public void dropTable() throws SQLException {
+        insert.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table user_id_benchmark");
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    public void insertBatch(InsertedRows rows) throws SQLException {
+        for (int row = 0; row < BATCH_SIZE; row++) {
+            insert.setLong(1, ++nextId);
+            insert.setString(2, userIds.get());
+            insert.addBatch();
+        }
+        for (int count : insert.executeBatch()) {
+            if (count > 0) {
+                rows.inserted += count;
+            } else {
+                rows.collisions++;
+            }
+        }
+        connection.commit();
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class InsertedRows {
+        public long inserted;
+        public long collisions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            inserted = 0;
+            collisions = 0;
+        }
+    }
+
+    private static Supplier<String> userIds(String scheme) {
+        switch (scheme) {
+            case "randomNumeric":
+                // The ids users had before the time ordered generator
+                return () -> RandomStringUtils.randomNumeric(10);
+            case "randomUuid":
+                // The id the seeder gave the super admin before
+                return () -> UUID.randomUUID().toString();
+            case "timeOrdered":
+                return new TimeOrderedUserIdGenerator()::generateUserId;
+            default:
+                throw new IllegalArgumentException(scheme);
+        }
+    }
+
+    private static String environment(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -1,15 +1,22 @@
 package com.supportportal;
 
+import com.supportportal.utility.BCryptCalibration;
+import com.supportportal.utility.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.io.File;
 
 import static com.supportportal.constant.FileConstant.USER_FOLDER;
 
 @SpringBootApplication
+@EnableScheduling
 public class SupportPortalAppApplication {
 
 	public static void main(String[] args) {
@@ -21,9 +28,17 @@ public class SupportPortalAppApplication {
 	}
 
 	@Bean
-	public BCryptPasswordEncoder bCryptPasswordEncoder()
+	public PasswordEncoder passwordEncoder(@Value("${password-hashing.threads:0}") int threads,
+										   @Value("${password-hashing.queue-capacity:64}") int queueCapacity,
+										   @Value("${password-hashing.bcrypt.min-strength:10}") int minStrength,
+										   @Value("${password-hashing.bcrypt.max-strength:14}") int maxStrength,
+										   @Value("${password-hashing.bcrypt.target-millis:250}") long targetMillis,
+										   MeterRegistry meterRegistry)
 	{
-		return new BCryptPasswordEncoder();
+		BCryptCalibration calibration = BCryptCalibration.calibrate(minStrength, maxStrength, targetMillis);
+		calibration.bindTo(meterRegistry);
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		return new BoundedPasswordEncoder(new BCryptPasswordEncoder(calibration.getStrength()), poolSize, queueCapacity, meterRegistry);
 	}
 
 }
@@ -0,0 +1,33 @@
+package com.supportportal.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token buckets of the rate limit filter, one rule per URL pattern. Each client IP gets its
+ * own bucket per rule holding {@code capacity} requests, refilled at {@code refillPerMinute}.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    // Buckets kept per rule; clients beyond that share buckets, see TokenBucketTable
+    private int tableSize = 65_536;
+    private List<Rule> rules = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Rule {
+        private String pattern;
+        private int capacity;
+        private int refillPerMinute;
+    }
+}
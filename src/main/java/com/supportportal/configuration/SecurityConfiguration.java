@@ -5,6 +5,7 @@ import com.supportportal.constant.SecurityConstant;
 import com.supportportal.filter.JwtAccessDeniedHandler;
 import com.supportportal.filter.JwtAuthenticationEntryPoint;
 import com.supportportal.filter.JwtAuthorizationFilter;
+import com.supportportal.filter.RateLimitFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -24,13 +25,16 @@ public class SecurityConfiguration {
     private final JwtAuthorizationFilter jwtAuthorizationFilter;
     private final JwtAccessDeniedHandler jwtAccessDeniedHandler;
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
+    private final RateLimitFilter rateLimitFilter;
 
     public SecurityConfiguration(JwtAuthorizationFilter jwtAuthorizationFilter,
                                  JwtAccessDeniedHandler jwtAccessDeniedHandler,
-                                 JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint) {
+                                 JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
+                                 RateLimitFilter rateLimitFilter) {
         this.jwtAuthorizationFilter = jwtAuthorizationFilter;
         this.jwtAccessDeniedHandler = jwtAccessDeniedHandler;
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
     @Bean
@@ -53,7 +57,8 @@ public class SecurityConfiguration {
                 .and()
                 .headers().frameOptions().sameOrigin()
                 .and()
-                .addFilterBefore(jwtAuthorizationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthorizationFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(rateLimitFilter, JwtAuthorizationFilter.class);
 
         return http.build();
     }
@@ -1,13 +1,31 @@
 package com.supportportal.configuration;
 
+import com.supportportal.filter.ConcurrencyLimitInterceptor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    public WebConfig(ConcurrencyLimitInterceptor concurrencyLimitInterceptor) {
+        this.concurrencyLimitInterceptor = concurrencyLimitInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Shed overload before the user endpoints touch the services or the connection pool.
+        // Exports and imports run for minutes and would distort the latency samples, so they are left out;
+        // exports are bounded by a limit of their own (user-export.max-concurrent).
+        registry.addInterceptor(concurrencyLimitInterceptor)
+                .addPathPatterns("/user/**")
+                .excludePathPatterns("/user/export", "/user/import");
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Add resource handler for Swagger UI static resources
@@ -27,7 +45,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:4200") // Angular development server
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")
                 .allowedHeaders("*")
-                .exposedHeaders("jwt-token", "authorization")
+                .exposedHeaders("jwt-token", "refresh-token", "authorization", "x-next-cursor", "x-total-count")
                 .allowCredentials(true)
                 .maxAge(3600);
     }
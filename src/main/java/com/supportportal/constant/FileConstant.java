@@ -11,5 +11,9 @@ public class FileConstant {
     public static final String DOT = ".";
     public static final String FORWARD_SLASH = "/";
     public static final String TEMP_PROFILE_IMAGE_BASE_URL = "https://robohash.org/";
+    public static final String PROFILE_IMAGE_VERSION_PARAMETER = "v";
+    public static final String NOT_AN_IMAGE_FILE = " is not an image file. Please upload an image";
+    public static final String IMAGE_TOO_LARGE = "Image is too large, at most %d megapixels are accepted";
+    public static final String IMAGE_PROCESSING_BUSY = "Too many image uploads. Please try again shortly";
 
 }
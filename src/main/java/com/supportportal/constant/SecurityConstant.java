@@ -1,18 +1,27 @@
 package com.supportportal.constant;
 
 public class SecurityConstant {
-    public static final long EXPIRATION_TIME = 432_000_000; // 5 days expressed in milliseconds
+    public static final long EXPIRATION_TIME = 900_000; // 15 minutes expressed in milliseconds
+    public static final long REFRESH_EXPIRATION_TIME = 432_000_000; // 5 days expressed in milliseconds
     public static final String TOKEN_PREFIX = "Bearer ";
     public static final String JWT_TOKEN_HEADER = "Jwt-Token";
+    public static final String REFRESH_TOKEN_HEADER = "Refresh-Token";
     public static final String TOKEN_CANNOT_BE_VERIFIED = "Token Cannot be verified";
     public static final String GET_ARRAYS_LLC = "Get Arrays, LLC";
     public static final String GET_ARRAYS_ADMINISTRATION = "User Management Portal";
     public static final String AUTHORITIES = "Authorities";
+    public static final String PERMISSIONS = "prm";
+    public static final String ROLE = "rol";
+    public static final String TOKEN_EPOCH = "epc";
+    public static final String TOKEN_USE = "use";
+    public static final String REFRESH_TOKEN_USE = "refresh";
     public static final String FORBIDDEN_MESSAGE = "You need to log in to access this page";
     public static final String ACCESS_DENIED_MESSAGE = "You do not have permission to access this page";
+    public static final String TOO_MANY_REQUESTS_MESSAGE = "Too many requests, please try again later";
     public static final String OPTIONS_HTTP_METHOD = "OPTIONS";
     public static final String[] PUBLIC_URLS = {
         "/user/login",
+        "/user/token/refresh",
         "/user/register",
         "/user/resetpassword/**",
         "/user/image/**",
@@ -6,4 +6,22 @@ public class UserImplConstant {
     public static final String NO_USER_FOUND_BY_USERNAME = "No user found by username ";
     public static final String FOUND_USER_BY_USERNAME = "Returning found user by username: ";
     public static final String NO_USER_FOUND_BY_EMAIL = "No user found for email";
+    public static final String USERNAME_UNIQUE_CONSTRAINT = "uk_user_username";
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_user_email";
+    public static final String USER_ID_UNIQUE_CONSTRAINT = "uk_user_user_id";
+    public static final String UNKNOWN_FIELD = "Unknown field: ";
+    public static final int MAXIMUM_PAGE_SIZE = 500;
+    public static final String PAGE_SIZE_OUT_OF_RANGE = "Page size must be between 1 and %d";
+    public static final String USER_SEQUENCE = "user_sequence";
+    public static final int USER_SEQUENCE_ALLOCATION_SIZE = 50;
+    public static final String MISSING_IMPORT_FIELD = "Missing required field: ";
+    public static final String UNKNOWN_ROLE = "Unknown role: ";
+    public static final String MALFORMED_IMPORT_ROW = "Malformed row: ";
+    public static final int MAXIMUM_BULK_USERNAMES = 1000;
+    public static final int BULK_STATEMENT_SIZE = 1000;
+    public static final String BULK_SELECTION_REQUIRED = "Select users by usernames, role, active or notLocked";
+    public static final String TOO_MANY_BULK_USERNAMES = "At most %d usernames per request, use a filter for larger groups";
+    public static final String BULK_ACTION_REQUIRED = "Action is required";
+    public static final String NEW_ROLE_REQUIRED = "New role is required to change roles";
+    public static final String EXPORTS_BUSY = "Too many exports in progress. Please try again shortly";
 }
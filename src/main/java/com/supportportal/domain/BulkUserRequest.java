@@ -0,0 +1,26 @@
+package com.supportportal.domain;
+
+import com.supportportal.enumeration.BulkAction;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Selects the users of a bulk operation, by username, by filter or both: a user is selected
+ * when it matches every given criterion. At least one criterion is required.
+ */
+@Data
+@NoArgsConstructor
+public class BulkUserRequest {
+
+    // Change to apply, ignored when deleting
+    private BulkAction action;
+    // Role given to every selected user by CHANGE_ROLE
+    private String newRole;
+
+    private List<String> usernames;
+    private String role;
+    private Boolean active;
+    private Boolean notLocked;
+}
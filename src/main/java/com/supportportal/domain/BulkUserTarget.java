@@ -0,0 +1,19 @@
+package com.supportportal.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The columns of a user a bulk operation needs to decide whether and how it applies.
+ */
+@Getter
+@AllArgsConstructor
+public class BulkUserTarget {
+
+    private final Long id;
+    private final String username;
+    private final String role;
+    private final boolean active;
+    private final boolean notLocked;
+    private final Long tokenEpoch;
+}
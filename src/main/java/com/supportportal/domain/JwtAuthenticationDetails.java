@@ -0,0 +1,25 @@
+package com.supportportal.domain;
+
+import com.supportportal.enumeration.Role;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Request details of a token authentication, plus the role claimed by the verified token so
+ * permission checks can use it without loading the user. The role is null for tokens issued
+ * before the claim existed.
+ */
+public class JwtAuthenticationDetails extends WebAuthenticationDetails {
+
+    private final Role role;
+
+    public JwtAuthenticationDetails(HttpServletRequest request, Role role) {
+        super(request);
+        this.role = role;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+}
@@ -0,0 +1,30 @@
+package com.supportportal.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Failed logins of one username counted by one instance during one time bucket. Only used by
+ * the JDBC login attempt store; rows are inserted in batches and never updated, so instances
+ * never contend on the same row.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "login_attempt", indexes = @Index(name = "idx_login_attempt_username_bucket", columnList = "username, bucket_start"))
+public class LoginAttempt {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(nullable = false, updatable = false)
+    private Long id;
+    @Column(nullable = false)
+    private String username;
+    @Column(name = "bucket_start", nullable = false)
+    private long bucketStart;
+    @Column(nullable = false)
+    private int attempts;
+}
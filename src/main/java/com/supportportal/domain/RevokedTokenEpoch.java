@@ -0,0 +1,27 @@
+package com.supportportal.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Last token epoch of a username that no user holds anymore, because the user was deleted or
+ * renamed. Written in the transaction that removes the username, so tokens issued under it are
+ * still rejected after a restart.
+ */
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "revoked_token_epoch")
+public class RevokedTokenEpoch {
+    @Id
+    @Column(nullable = false, updatable = false)
+    private String username;
+    @Column(nullable = false)
+    private long epoch;
+}
@@ -1,5 +1,8 @@
 package com.supportportal.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.supportportal.constant.UserImplConstant;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -14,16 +17,30 @@ import java.util.Date;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "`user`")
+@Table(name = "`user`", uniqueConstraints = {
+        @UniqueConstraint(name = UserImplConstant.USERNAME_UNIQUE_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = UserImplConstant.EMAIL_UNIQUE_CONSTRAINT, columnNames = "email"),
+        @UniqueConstraint(name = UserImplConstant.USER_ID_UNIQUE_CONSTRAINT, columnNames = "userId")
+}, indexes = {
+        @Index(name = "idx_user_first_name", columnList = "firstName, id"),
+        @Index(name = "idx_user_last_name", columnList = "lastName, id"),
+        @Index(name = "idx_user_role", columnList = "role, id"),
+        @Index(name = "idx_user_join_date", columnList = "joinDate, id")
+})
 public class User implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    // Ids are handed out in blocks, so batched inserts do not need a round trip per row
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = UserImplConstant.USER_SEQUENCE)
+    @SequenceGenerator(name = UserImplConstant.USER_SEQUENCE, sequenceName = UserImplConstant.USER_SEQUENCE,
+            allocationSize = UserImplConstant.USER_SEQUENCE_ALLOCATION_SIZE)
     @Column(nullable = false, updatable = false)
     private Long id;
     private String userId;
     private String firstName;
     private String lastName;
     private String username;
+    // Accepted when deserializing, never written to a response
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
     private String email;
     private String profileImageUrl;
@@ -34,5 +51,8 @@ public class User implements Serializable {
     private String[] authorities;
     private boolean isActive;
     private boolean isNotLocked;
+    // Bumped whenever tokens already issued to the user must stop being accepted
+    @JsonIgnore
+    private Long tokenEpoch;
 
 }
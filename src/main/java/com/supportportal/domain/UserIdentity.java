@@ -0,0 +1,11 @@
+package com.supportportal.domain;
+
+/**
+ * Projection of the unique columns of a user, for conflict checks that need no entity.
+ */
+public interface UserIdentity {
+
+    String getUsername();
+
+    String getEmail();
+}
@@ -0,0 +1,27 @@
+package com.supportportal.domain;
+
+import com.supportportal.enumeration.ImportStatus;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import, one result per row of the file in file order.
+ */
+@Getter
+public class UserImportReport {
+
+    private int created;
+    private int failed;
+    private final List<UserImportResult> rows = new ArrayList<>();
+
+    public void add(UserImportResult result) {
+        if (result.getStatus() == ImportStatus.CREATED) {
+            created++;
+        } else {
+            failed++;
+        }
+        rows.add(result);
+    }
+}
@@ -0,0 +1,15 @@
+package com.supportportal.domain;
+
+import com.supportportal.enumeration.ImportStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UserImportResult {
+
+    private final int row;
+    private final String username;
+    private final ImportStatus status;
+    private final String message;
+}
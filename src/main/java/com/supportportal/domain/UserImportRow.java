@@ -0,0 +1,32 @@
+package com.supportportal.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One user read from an import file. The field names match the export, so an exported file
+ * can be imported again; columns the import does not use are ignored.
+ */
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserImportRow {
+
+    private String firstName;
+    private String lastName;
+    private String username;
+    private String email;
+    private String role;
+    private Boolean active;
+    private Boolean notLocked;
+
+    // Position in the file, 1 for the first user
+    @JsonIgnore
+    private int row;
+
+    // Set when the row could not be read at all
+    @JsonIgnore
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.supportportal.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of {@code /user/list}, each user holding only the requested fields. The next cursor is null on the last page, the total count
+ * is null unless it was requested.
+ */
+@Getter
+@AllArgsConstructor
+public class UserPage {
+
+    private final List<Map<String, Object>> users;
+    private final String nextCursor;
+    private final Long totalCount;
+}
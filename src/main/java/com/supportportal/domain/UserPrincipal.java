@@ -1,17 +1,14 @@
 package com.supportportal.domain;
 
+import com.supportportal.enumeration.Role;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
-
-import static java.util.Arrays.stream;
 
 
 @AllArgsConstructor
@@ -24,7 +21,12 @@ public class UserPrincipal implements UserDetails {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return stream(this.user.getAuthorities()).map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+        return Role.grantedAuthoritiesOf(this.user.getAuthorities());
+    }
+
+    public long getTokenEpoch() {
+        Long tokenEpoch = this.user.getTokenEpoch();
+        return tokenEpoch == null ? 0L : tokenEpoch;
     }
 
     @Override
@@ -0,0 +1,18 @@
+package com.supportportal.domain;
+
+import com.supportportal.enumeration.UserSortKey;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UserSortOrder {
+
+    private final UserSortKey sortKey;
+    private final boolean ascending;
+
+    @Override
+    public String toString() {
+        return (ascending ? "" : "-") + sortKey.getAttribute();
+    }
+}
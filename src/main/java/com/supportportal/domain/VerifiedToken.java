@@ -0,0 +1,25 @@
+package com.supportportal.domain;
+
+import com.supportportal.enumeration.Role;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Claims of a JWT whose signature, issuer and expiry have already been checked,
+ * so the filter can read them without decoding the token a second time.
+ */
+@Getter
+@AllArgsConstructor
+public class VerifiedToken {
+
+    private final String subject;
+    private final Date expiresAt;
+    private final Role role;
+    private final long tokenEpoch;
+    private final List<GrantedAuthority> authorities;
+
+}
@@ -0,0 +1,22 @@
+package com.supportportal.enumeration;
+
+public enum BulkAction {
+    LOCK(true),
+    UNLOCK(false),
+    ACTIVATE(false),
+    DEACTIVATE(true),
+    CHANGE_ROLE(true);
+
+    private final boolean revokesTokens;
+
+    BulkAction(boolean revokesTokens) {
+        this.revokesTokens = revokesTokens;
+    }
+
+    /**
+     * Whether tokens issued before the change must stop working, as for a single update.
+     */
+    public boolean revokesTokens() {
+        return revokesTokens;
+    }
+}
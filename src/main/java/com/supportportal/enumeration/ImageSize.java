@@ -0,0 +1,42 @@
+package com.supportportal.enumeration;
+
+/**
+ * The variants every uploaded profile image is stored in. Thumbnails and medium images are
+ * cropped to a centered square; the original keeps its aspect ratio and is only capped.
+ */
+public enum ImageSize {
+    THUMBNAIL("thumbnail", 96, true),
+    MEDIUM("medium", 320, true),
+    ORIGINAL("original", 1024, false);
+
+    private final String parameter;
+    private final int maxDimension;
+    private final boolean square;
+
+    ImageSize(String parameter, int maxDimension, boolean square) {
+        this.parameter = parameter;
+        this.maxDimension = maxDimension;
+        this.square = square;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public boolean isSquare() {
+        return square;
+    }
+
+    public static ImageSize fromParameter(String size) {
+        for (ImageSize imageSize : values()) {
+            if (imageSize.parameter.equalsIgnoreCase(size)) {
+                return imageSize;
+            }
+        }
+        return null;
+    }
+}
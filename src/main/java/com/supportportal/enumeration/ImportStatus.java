@@ -0,0 +1,6 @@
+package com.supportportal.enumeration;
+
+public enum ImportStatus {
+    CREATED,
+    FAILED
+}
@@ -0,0 +1,89 @@
+package com.supportportal.enumeration;
+
+import com.supportportal.constant.Authority;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The individual authorities of {@link Authority}, each owning one bit so that a set of them
+ * fits in an {@code int} and can be carried as a single compact claim in the JWT.
+ */
+public enum Permission {
+    USER_READ("user:read"),
+    USER_UPDATE("user:update"),
+    USER_CREATE("user:create"),
+    USER_DELETE("user:delete");
+
+    private static final Permission[] PERMISSIONS = values();
+    private static final List<List<GrantedAuthority>> GRANTED_AUTHORITIES_BY_MASK = new ArrayList<>();
+
+    static {
+        for (int mask = 0; mask < 1 << PERMISSIONS.length; mask++) {
+            List<GrantedAuthority> grantedAuthorities = new ArrayList<>();
+            for (Permission permission : PERMISSIONS) {
+                if ((mask & permission.mask) != 0) {
+                    grantedAuthorities.add(permission.grantedAuthority);
+                }
+            }
+            GRANTED_AUTHORITIES_BY_MASK.add(Collections.unmodifiableList(grantedAuthorities));
+        }
+    }
+
+    private final String authority;
+    private final int mask;
+    private final GrantedAuthority grantedAuthority;
+
+    Permission(String authority){
+        this.authority = authority;
+        this.mask = 1 << ordinal();
+        this.grantedAuthority = new SimpleGrantedAuthority(authority);
+    }
+
+    public String getAuthority(){
+        return authority;
+    }
+
+    public int getMask(){
+        return mask;
+    }
+
+    public static int maskOf(String... authorities){
+        int mask = 0;
+        if (authorities != null) {
+            for (String authority : authorities) {
+                mask |= maskOf(authority);
+            }
+        }
+        return mask;
+    }
+
+    public static int maskOf(Collection<? extends GrantedAuthority> authorities){
+        int mask = 0;
+        for (GrantedAuthority grantedAuthority : authorities) {
+            mask |= maskOf(grantedAuthority.getAuthority());
+        }
+        return mask;
+    }
+
+    /**
+     * The shared, immutable authorities for a permission mask. Bits outside the known
+     * permissions are ignored.
+     */
+    public static List<GrantedAuthority> grantedAuthoritiesOf(int mask){
+        return GRANTED_AUTHORITIES_BY_MASK.get(mask & (GRANTED_AUTHORITIES_BY_MASK.size() - 1));
+    }
+
+    private static int maskOf(String authority){
+        for (Permission permission : PERMISSIONS) {
+            if (permission.authority.equals(authority)) {
+                return permission.mask;
+            }
+        }
+        return 0;
+    }
+}
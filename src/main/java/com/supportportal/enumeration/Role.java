@@ -1,23 +1,62 @@
 package com.supportportal.enumeration;
 
 import com.supportportal.constant.Authority;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
 
 public enum Role {
-    ROLE_USER(Authority.USER_AUTHORITIES),
-    ROLE_HR(Authority.HR_AUTHORITIES),
-    ROLE_MANAGER(Authority.MANAGER_AUTHORITIES),
-    ROLE_ADMIN(Authority.ADMIN_AUTHORITIES),
-    ROLE_SUPER_ADMIN(Authority.SUPER_ADMIN_AUTHORITIES);
+    ROLE_USER(1, Authority.USER_AUTHORITIES),
+    ROLE_HR(2, Authority.HR_AUTHORITIES),
+    ROLE_MANAGER(3, Authority.MANAGER_AUTHORITIES),
+    ROLE_ADMIN(4, Authority.ADMIN_AUTHORITIES),
+    ROLE_SUPER_ADMIN(5, Authority.SUPER_ADMIN_AUTHORITIES);
 
+    private final int level;
     private String[] authorities;
+    private final int permissions;
 
-    Role(String... authorities){
+    Role(int level, String... authorities){
+        this.level = level;
         this.authorities = authorities;
+        this.permissions = Permission.maskOf(authorities);
     }
 
     public String[] getAuthorities(){
         return authorities;
     }
 
+    /**
+     * Position of the role in the hierarchy, higher levels may manage lower ones.
+     */
+    public int getLevel(){
+        return level;
+    }
+
+    /**
+     * Bitmask of the role's {@link Permission}s.
+     */
+    public int getPermissions(){
+        return permissions;
+    }
+
+    public boolean hasPermission(Permission permission){
+        return (permissions & permission.getMask()) != 0;
+    }
+
+    /**
+     * Immutable authorities of this role, built once and shared by every principal and token.
+     */
+    public List<GrantedAuthority> getGrantedAuthorities(){
+        return Permission.grantedAuthoritiesOf(permissions);
+    }
+
+    /**
+     * Resolves authority names, as stored on a user or carried in a legacy token, to the shared
+     * authority collection for the same set of permissions.
+     */
+    public static List<GrantedAuthority> grantedAuthoritiesOf(String[] authorities){
+        return Permission.grantedAuthoritiesOf(Permission.maskOf(authorities));
+    }
 
 }
@@ -0,0 +1,106 @@
+package com.supportportal.enumeration;
+
+import com.supportportal.domain.User;
+import com.supportportal.exception.domain.UnknownFieldException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static com.supportportal.constant.UserImplConstant.UNKNOWN_FIELD;
+
+/**
+ * User fields that can be requested with {@code fields=}, by their JSON name. Only these
+ * columns are selected from the database; the password hash and the token epoch are not
+ * among them and can never be requested.
+ */
+public enum UserField {
+    ID("id", "id", User::getId, true),
+    USER_ID("userId", "userId", User::getUserId, true),
+    FIRST_NAME("firstName", "firstName", User::getFirstName, true),
+    LAST_NAME("lastName", "lastName", User::getLastName, true),
+    USERNAME("username", "username", User::getUsername, true),
+    EMAIL("email", "email", User::getEmail, true),
+    PROFILE_IMAGE_URL("profileImageUrl", "profileImageUrl", User::getProfileImageUrl, true),
+    LAST_LOGIN_DATE("lastLoginDate", "lastLoginDate", User::getLastLoginDate, true),
+    LAST_LOGIN_DATE_DISPLAY("llastLoginDateDisplay", "lLastLoginDateDisplay", User::getLLastLoginDateDisplay, true),
+    JOIN_DATE("joinDate", "joinDate", User::getJoinDate, true),
+    ROLE("role", "role", User::getRole, true),
+    AUTHORITIES("authorities", "authorities", User::getAuthorities, true),
+    ACTIVE("active", "isActive", User::isActive, true),
+    NOT_LOCKED("notLocked", "isNotLocked", User::isNotLocked, true);
+
+    public static final Set<UserField> DEFAULT_FIELDS;
+
+    static {
+        Set<UserField> defaultFields = EnumSet.noneOf(UserField.class);
+        for (UserField field : values()) {
+            if (field.inDefault) {
+                defaultFields.add(field);
+            }
+        }
+        DEFAULT_FIELDS = Collections.unmodifiableSet(defaultFields);
+    }
+
+    private final String jsonName;
+    private final String attribute;
+    private final Function<User, Object> accessor;
+    private final boolean inDefault;
+
+    UserField(String jsonName, String attribute, Function<User, Object> accessor, boolean inDefault) {
+        this.jsonName = jsonName;
+        this.attribute = attribute;
+        this.accessor = accessor;
+        this.inDefault = inDefault;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Parses comma separated JSON names; no names at all means {@link #DEFAULT_FIELDS}.
+     */
+    public static Set<UserField> parse(String fields) throws UnknownFieldException {
+        if (StringUtils.isBlank(fields)) {
+            return DEFAULT_FIELDS;
+        }
+        Set<UserField> parsed = EnumSet.noneOf(UserField.class);
+        for (String name : StringUtils.split(fields, ',')) {
+            UserField field = fromJsonName(name.trim());
+            if (field == null) {
+                throw new UnknownFieldException(UNKNOWN_FIELD + name.trim());
+            }
+            parsed.add(field);
+        }
+        return parsed;
+    }
+
+    /**
+     * Projects an already loaded user, for responses that need the entity anyway.
+     */
+    public static Map<String, Object> project(User user, Set<UserField> fields) {
+        Map<String, Object> projection = new LinkedHashMap<>();
+        for (UserField field : fields) {
+            projection.put(field.jsonName, field.accessor.apply(user));
+        }
+        return projection;
+    }
+
+    private static UserField fromJsonName(String jsonName) {
+        for (UserField field : values()) {
+            if (field.jsonName.equalsIgnoreCase(jsonName)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+package com.supportportal.enumeration;
+
+import java.util.Date;
+
+/**
+ * Columns {@code /user/list} can be sorted by. Each one is indexed together with the id, so a
+ * keyset page is an index range scan no matter how deep into the directory it starts.
+ */
+public enum UserSortKey {
+    USERNAME("username"),
+    EMAIL("email"),
+    FIRST_NAME("firstName"),
+    LAST_NAME("lastName"),
+    ROLE("role"),
+    JOIN_DATE("joinDate");
+
+    private final String attribute;
+
+    UserSortKey(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public static UserSortKey fromAttribute(String attribute) {
+        for (UserSortKey sortKey : values()) {
+            if (sortKey.attribute.equalsIgnoreCase(attribute)) {
+                return sortKey;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts a value of the attribute to the form written into a page cursor.
+     */
+    public Object cursorValueOf(Object attributeValue) {
+        if (attributeValue instanceof Date) {
+            return ((Date) attributeValue).getTime();
+        }
+        return attributeValue;
+    }
+
+    /**
+     * Converts a value read back from a page cursor to the type of the attribute.
+     */
+    public Object attributeValueOf(Object cursorValue) {
+        if (this == JOIN_DATE) {
+            return new Date(((Number) cursorValue).longValue());
+        }
+        return (String) cursorValue;
+    }
+}
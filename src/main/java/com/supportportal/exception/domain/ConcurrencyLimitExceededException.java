@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class ConcurrencyLimitExceededException extends RuntimeException{
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,11 +1,14 @@
 package com.supportportal.exception.domain;
 
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.supportportal.constant.SecurityConstant;
 import com.supportportal.domain.HttpResponse;
 import com.supportportal.exception.domain.UserNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -60,6 +63,39 @@ public class ExceptionHandling{
         return createHttpResponse(HttpStatus.UNAUTHORIZED, exception.getMessage().toUpperCase());
     }
 
+    @ExceptionHandler(JWTVerificationException.class)
+    public ResponseEntity<HttpResponse> tokenVerificationException(){
+        return createHttpResponse(HttpStatus.UNAUTHORIZED, SecurityConstant.TOKEN_CANNOT_BE_VERIFIED);
+    }
+
+    @ExceptionHandler(PasswordHashingUnavailableException.class)
+    public ResponseEntity<HttpResponse> passwordHashingUnavailableException(PasswordHashingUnavailableException exception){
+        return createHttpResponse(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage());
+    }
+
+    @ExceptionHandler(ImageProcessingUnavailableException.class)
+    public ResponseEntity<HttpResponse> imageProcessingUnavailableException(ImageProcessingUnavailableException exception){
+        return createHttpResponse(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage());
+    }
+
+    @ExceptionHandler(ExportUnavailableException.class)
+    public ResponseEntity<HttpResponse> exportUnavailableException(ExportUnavailableException exception){
+        return createHttpResponse(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage());
+    }
+
+    @ExceptionHandler(NotAnImageFileException.class)
+    public ResponseEntity<HttpResponse> notAnImageFileException(NotAnImageFileException exception){
+        return createHttpResponse(HttpStatus.BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<HttpResponse> concurrencyLimitExceededException(ConcurrencyLimitExceededException exception){
+        ResponseEntity<HttpResponse> response = createHttpResponse(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage());
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
     @ExceptionHandler(EmailExistException.class)
     public ResponseEntity<HttpResponse> emailExistException(EmailExistException exception){
         return createHttpResponse(HttpStatus.BAD_REQUEST, exception.getMessage().toUpperCase());
@@ -80,6 +116,26 @@ public class ExceptionHandling{
         return createHttpResponse(HttpStatus.BAD_REQUEST, exception.getMessage().toUpperCase());
     }
 
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<HttpResponse> invalidPageRequestException(InvalidPageRequestException exception){
+        return createHttpResponse(HttpStatus.BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<HttpResponse> invalidBulkRequestException(InvalidBulkRequestException exception){
+        return createHttpResponse(HttpStatus.BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(UnknownFieldException.class)
+    public ResponseEntity<HttpResponse> unknownFieldException(UnknownFieldException exception){
+        return createHttpResponse(HttpStatus.BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(UnsupportedExportFormatException.class)
+    public ResponseEntity<HttpResponse> unsupportedExportFormatException(UnsupportedExportFormatException exception){
+        return createHttpResponse(HttpStatus.BAD_REQUEST, exception.getMessage());
+    }
+
     @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
     public ResponseEntity<HttpResponse> methodNotSupportedException(HttpRequestMethodNotSupportedException exception){
         HttpMethod supportedMethod = Objects.requireNonNull(exception.getSupportedHttpMethods()).iterator().next();
@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class ExportUnavailableException extends RuntimeException{
+    public ExportUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class ImageProcessingUnavailableException extends RuntimeException{
+    public ImageProcessingUnavailableException(String message) {
+        super(message);
+    }
+}
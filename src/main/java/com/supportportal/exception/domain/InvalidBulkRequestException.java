@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class InvalidBulkRequestException extends Exception{
+    public InvalidBulkRequestException(String message) {
+        super(message);
+    }
+}
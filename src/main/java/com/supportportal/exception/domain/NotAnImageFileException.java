@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class NotAnImageFileException extends Exception{
+    public NotAnImageFileException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class PasswordHashingUnavailableException extends RuntimeException{
+    public PasswordHashingUnavailableException(String message) {
+        super(message);
+    }
+}
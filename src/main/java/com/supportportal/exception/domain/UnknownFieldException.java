@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class UnknownFieldException extends Exception{
+    public UnknownFieldException(String message) {
+        super(message);
+    }
+}
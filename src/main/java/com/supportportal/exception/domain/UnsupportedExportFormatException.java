@@ -0,0 +1,7 @@
+package com.supportportal.exception.domain;
+
+public class UnsupportedExportFormatException extends Exception{
+    public UnsupportedExportFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,130 @@
+package com.supportportal.filter;
+
+import com.supportportal.exception.domain.ConcurrencyLimitExceededException;
+import com.supportportal.utility.AdaptiveConcurrencyLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sheds {@code /user} requests above the adaptive concurrency limit before they reach the
+ * services or the connection pool. Logins, registrations and user changes hash passwords or
+ * write images, so they get their own "auth" partition; everything else shares the "read"
+ * partition and keeps being served while the auth partition is saturated.
+ * <p>
+ * An asynchronous request keeps its permit from the first dispatch until
+ * {@link #afterCompletion} of the last one, so it counts against the limit while it is being
+ * processed off the request thread too.
+ */
+@Component
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String SERVICE_OVERLOADED = "The server is too busy to handle the request. Please try again shortly";
+    private static final String[] AUTH_PATTERNS = {
+        "/user/login",
+        "/user/token/refresh",
+        "/user/register",
+        "/user/add",
+        "/user/update",
+        "/user/updateProfileImage",
+        "/user/bulk/**",
+        "/user/resetPassword/**"
+    };
+    private static final String PERMIT = ConcurrencyLimitInterceptor.class.getName() + ".PERMIT";
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final boolean enabled;
+    private final Partition authPartition;
+    private final Partition readPartition;
+
+    public ConcurrencyLimitInterceptor(@Value("${concurrency-limit.enabled:true}") boolean enabled,
+                                       @Value("${concurrency-limit.auth.initial-limit:16}") int authInitialLimit,
+                                       @Value("${concurrency-limit.auth.max-limit:64}") int authMaxLimit,
+                                       @Value("${concurrency-limit.read.initial-limit:32}") int readInitialLimit,
+                                       @Value("${concurrency-limit.read.max-limit:200}") int readMaxLimit,
+                                       @Value("${concurrency-limit.min-limit:4}") int minLimit,
+                                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.pathMatcher.setCaseSensitive(false);
+        this.authPartition = new Partition("auth", new AdaptiveConcurrencyLimit(authInitialLimit, minLimit, authMaxLimit), meterRegistry);
+        this.readPartition = new Partition("read", new AdaptiveConcurrencyLimit(readInitialLimit, minLimit, readMaxLimit), meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async dispatches of a request that already holds a permit
+        if (!enabled || request.getAttribute(PERMIT) != null) {
+            return true;
+        }
+        Partition partition = partitionOf(urlPathHelper.getPathWithinApplication(request));
+        int inFlight = partition.limit.tryAcquire();
+        if (inFlight == 0) {
+            partition.shed.increment();
+            throw new ConcurrencyLimitExceededException(SERVICE_OVERLOADED);
+        }
+        request.setAttribute(PERMIT, new Permit(partition, inFlight, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Called instead of afterCompletion when the handler went async: the permit is kept
+        // and released by afterCompletion of the async dispatch
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object permit = request.getAttribute(PERMIT);
+        if (permit instanceof Permit) {
+            request.removeAttribute(PERMIT);
+            ((Permit) permit).release();
+        }
+    }
+
+    private Partition partitionOf(String path) {
+        for (String pattern : AUTH_PATTERNS) {
+            if (pathMatcher.match(pattern, path)) {
+                return authPartition;
+            }
+        }
+        return readPartition;
+    }
+
+    private static class Partition {
+        private final AdaptiveConcurrencyLimit limit;
+        private final Counter shed;
+
+        private Partition(String name, AdaptiveConcurrencyLimit limit, MeterRegistry meterRegistry) {
+            this.limit = limit;
+            this.shed = Counter.builder("concurrency.shed")
+                    .description("Requests rejected because the concurrency limit was reached")
+                    .tag("partition", name)
+                    .register(meterRegistry);
+            limit.bindTo(meterRegistry, name);
+        }
+    }
+
+    private static class Permit {
+        private final Partition partition;
+        private final int inFlight;
+        private final long startNanos;
+
+        private Permit(Partition partition, int inFlight, long startNanos) {
+            this.partition = partition;
+            this.inFlight = inFlight;
+            this.startNanos = startNanos;
+        }
+
+        private void release() {
+            partition.limit.release(System.nanoTime() - startNanos, inFlight);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.supportportal.filter;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.supportportal.constant.SecurityConstant;
+import com.supportportal.domain.VerifiedToken;
+import com.supportportal.service.TokenEpochService;
 import com.supportportal.utility.JWTTokenProvider;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -15,15 +17,16 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.List;
 
 @Component
 public class JwtAuthorizationFilter extends OncePerRequestFilter {
 
     private JWTTokenProvider jwtTokenProvider;
+    private TokenEpochService tokenEpochService;
 
-    public JwtAuthorizationFilter(JWTTokenProvider jwtTokenProvider) {
+    public JwtAuthorizationFilter(JWTTokenProvider jwtTokenProvider, TokenEpochService tokenEpochService) {
         this.jwtTokenProvider = jwtTokenProvider;
+        this.tokenEpochService = tokenEpochService;
     }
 
     @Override
@@ -38,12 +41,18 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
             }
 
             String token = authorizationHeader.substring(SecurityConstant.TOKEN_PREFIX.length());
-            String username = jwtTokenProvider.getSubject(token);
-            if(jwtTokenProvider.isTokenValid(username, token)){
-                List<GrantedAuthority> authorities = jwtTokenProvider.getAuthorities(token);
-                Authentication authentication = jwtTokenProvider.getAuthentication(username, authorities, request);
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-            }else{
+            try {
+                VerifiedToken verifiedToken = jwtTokenProvider.verifyToken(token);
+                if(jwtTokenProvider.isTokenValid(verifiedToken)
+                        && tokenEpochService.isCurrent(verifiedToken.getSubject(), verifiedToken.getTokenEpoch())){
+                    Authentication authentication = jwtTokenProvider.getAuthentication(verifiedToken, request);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }else{
+                    SecurityContextHolder.clearContext();
+                }
+            } catch (JWTVerificationException exception) {
+                // Expired access tokens are routine now that they are short-lived: continue
+                // unauthenticated so public endpoints such as the token refresh still work.
                 SecurityContextHolder.clearContext();
             }
         }
@@ -0,0 +1,107 @@
+package com.supportportal.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supportportal.configuration.RateLimitProperties;
+import com.supportportal.constant.SecurityConstant;
+import com.supportportal.domain.HttpResponse;
+import com.supportportal.utility.TokenBucketTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limits unauthenticated, expensive endpoints per client IP. Each configured URL pattern has
+ * its own table of token buckets; the first matching pattern decides. Rejected requests get
+ * 429 with a {@code Retry-After} header and are counted in {@code rate.limit.rejected}.
+ * <p>
+ * The client IP is {@link HttpServletRequest#getRemoteAddr()}, which Tomcat resolves from
+ * {@code X-Forwarded-For} when the request came through a trusted proxy (see
+ * {@code server.forward-headers-strategy}); otherwise every client behind the proxy would
+ * share one bucket.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<LimitedPattern> limitedPatterns = new ArrayList<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final boolean enabled;
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.pathMatcher.setCaseSensitive(false);
+        for (RateLimitProperties.Rule rule : properties.getRules()) {
+            TokenBucketTable buckets = new TokenBucketTable(properties.getTableSize(), rule.getCapacity(), rule.getRefillPerMinute());
+            Counter rejected = Counter.builder("rate.limit.rejected")
+                    .description("Requests rejected by the rate limit filter")
+                    .tag("pattern", rule.getPattern())
+                    .register(meterRegistry);
+            limitedPatterns.add(new LimitedPattern(rule.getPattern(), buckets, rejected));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || request.getMethod().equalsIgnoreCase(SecurityConstant.OPTIONS_HTTP_METHOD);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        for (LimitedPattern limitedPattern : limitedPatterns) {
+            if (pathMatcher.match(limitedPattern.pattern, path)) {
+                long waitMillis = limitedPattern.buckets.tryAcquire(request.getRemoteAddr());
+                if (waitMillis > 0) {
+                    limitedPattern.rejected.increment();
+                    reject(response, waitMillis);
+                    return;
+                }
+                break;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, long waitMillis) throws IOException {
+        HttpResponse httpResponse = new
+                HttpResponse(HttpStatus.TOO_MANY_REQUESTS.value(),
+                             HttpStatus.TOO_MANY_REQUESTS,
+                             HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase().toUpperCase(),
+                             SecurityConstant.TOO_MANY_REQUESTS_MESSAGE
+        );
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        OutputStream outputStream = response.getOutputStream();
+        mapper.writeValue(outputStream, httpResponse);
+        outputStream.flush();
+    }
+
+    private static class LimitedPattern {
+        private final String pattern;
+        private final TokenBucketTable buckets;
+        private final Counter rejected;
+
+        private LimitedPattern(String pattern, TokenBucketTable buckets, Counter rejected) {
+            this.pattern = pattern;
+            this.buckets = buckets;
+            this.rejected = rejected;
+        }
+    }
+}
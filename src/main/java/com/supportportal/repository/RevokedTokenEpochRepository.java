@@ -0,0 +1,7 @@
+package com.supportportal.repository;
+
+import com.supportportal.domain.RevokedTokenEpoch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RevokedTokenEpochRepository extends JpaRepository<RevokedTokenEpoch, String> {
+}
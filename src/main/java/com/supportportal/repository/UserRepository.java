@@ -1,9 +1,78 @@
 package com.supportportal.repository;
 
 import com.supportportal.domain.User;
+import com.supportportal.domain.UserIdentity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     User findUserByUsername(String username);
     User findUserByEmail(String email);
+
+    /**
+     * Users other than {@code excludedId} that already use the username or the email: at most
+     * one row per unique column, answered from the unique indexes in one round trip.
+     */
+    @Query("select u.username as username, u.email as email from User u " +
+            "where (u.username = :username or u.email = :email) and u.id <> :excludedId")
+    List<UserIdentity> findUsernameOrEmailConflicts(@Param("username") String username,
+                                                    @Param("email") String email,
+                                                    @Param("excludedId") Long excludedId);
+
+    /**
+     * Users already holding any of the usernames or emails, for checking a whole batch of new
+     * users in one round trip.
+     */
+    @Query("select u.username as username, u.email as email from User u " +
+            "where u.username in :usernames or u.email in :emails")
+    List<UserIdentity> findByUsernameInOrEmailIn(@Param("usernames") Collection<String> usernames,
+                                                 @Param("emails") Collection<String> emails);
+
+    // Read-only cursor for exports, must be consumed and closed inside a transaction
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAllByOrderById();
+
+    @Query("select u.username, u.tokenEpoch from User u where u.tokenEpoch > 0")
+    List<Object[]> findRevokedTokenEpochs();
+
+    @Modifying
+    @Query("update User u set u.isNotLocked = false where u.username = :username")
+    int lockUser(@Param("username") String username);
+
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
+
+    @Modifying
+    @Query("update User u set u.isNotLocked = :notLocked where u.id in :ids")
+    int updateNotLocked(@Param("ids") Collection<Long> ids, @Param("notLocked") boolean notLocked);
+
+    @Modifying
+    @Query("update User u set u.isActive = :active where u.id in :ids")
+    int updateActive(@Param("ids") Collection<Long> ids, @Param("active") boolean active);
+
+    @Modifying
+    @Query("update User u set u.role = :role, u.authorities = :authorities where u.id in :ids")
+    int updateRole(@Param("ids") Collection<Long> ids, @Param("role") String role, @Param("authorities") String[] authorities);
+
+    // Moves every given user one epoch forward, see TokenEpochService#revokeTokens(Map)
+    @Modifying
+    @Query("update User u set u.tokenEpoch = coalesce(u.tokenEpoch, 0) + 1 where u.id in :ids")
+    int revokeTokens(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
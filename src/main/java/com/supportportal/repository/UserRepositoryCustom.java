@@ -0,0 +1,36 @@
+package com.supportportal.repository;
+
+import com.supportportal.domain.BulkUserTarget;
+import com.supportportal.domain.UserSortOrder;
+import com.supportportal.enumeration.UserField;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Returns up to {@code limit} users in the given order, with the id as final tiebreaker,
+     * starting right after the position {@code after} (the sort values followed by the id of
+     * the last user seen) or at the beginning if it is null. Users without a value for a sort
+     * attribute come after all the others, whatever the direction.
+     * <p>
+     * Only the given fields are selected, keyed by their JSON name. The sort attributes and the
+     * id are selected as well, keyed by attribute name, so the caller can build the next cursor.
+     */
+    List<Map<String, Object>> findUserPage(List<UserSortOrder> sortOrders, Object[] after, int limit, Set<UserField> fields);
+
+    /**
+     * Selects only the given fields of the user, keyed by their JSON name, or returns null.
+     */
+    Map<String, Object> findUserFields(String username, Set<UserField> fields);
+
+    /**
+     * Selects the users matching every given criterion, null criteria match everyone, and
+     * locks their rows until the surrounding transaction ends so they cannot change between
+     * the permission checks and the bulk statements.
+     */
+    List<BulkUserTarget> findBulkTargets(Collection<String> usernames, String role, Boolean active, Boolean notLocked);
+}
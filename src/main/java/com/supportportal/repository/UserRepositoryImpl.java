@@ -0,0 +1,219 @@
+package com.supportportal.repository;
+
+import com.supportportal.domain.BulkUserTarget;
+import com.supportportal.domain.User;
+import com.supportportal.domain.UserSortOrder;
+import com.supportportal.enumeration.UserField;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String ID = "id";
+    private static final String USERNAME = "username";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // The page is read as two ranges of the first sort key: its non-null values, which the
+    // (key, id) indexes scan in order, then the users without a value, which sort last in both
+    // directions. A cursor whose first value is null starts directly in that null tail
+    @Override
+    public List<Map<String, Object>> findUserPage(List<UserSortOrder> sortOrders, Object[] after, int limit, Set<UserField> fields) {
+        Map<String, String> columns = columns(fields);
+        for (UserSortOrder sortOrder : sortOrders) {
+            String attribute = sortOrder.getSortKey().getAttribute();
+            columns.put(attribute, attribute);
+        }
+        columns.put(ID, ID);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (after == null || after[0] != null) {
+            rows.addAll(findValuedRange(columns, sortOrders, after, limit));
+        }
+        if (rows.size() < limit) {
+            rows.addAll(findNullTail(columns, sortOrders, after != null && after[0] == null ? after : null, limit - rows.size()));
+        }
+        return rows;
+    }
+
+    @Override
+    public Map<String, Object> findUserFields(String username, Set<UserField> fields) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<User> user = query.from(User.class);
+        query.multiselect(selections(user, columns(fields)))
+                .where(criteriaBuilder.equal(user.get(USERNAME), username));
+        List<Tuple> tuples = entityManager.createQuery(query).getResultList();
+        return tuples.isEmpty() ? null : toRow(tuples.get(0));
+    }
+
+    @Override
+    public List<BulkUserTarget> findBulkTargets(Collection<String> usernames, String role, Boolean active, Boolean notLocked) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BulkUserTarget> query = criteriaBuilder.createQuery(BulkUserTarget.class);
+        Root<User> user = query.from(User.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (usernames != null) {
+            predicates.add(user.get(USERNAME).in(usernames));
+        }
+        if (role != null) {
+            predicates.add(criteriaBuilder.equal(user.get("role"), role));
+        }
+        if (active != null) {
+            predicates.add(criteriaBuilder.equal(user.get("isActive"), active));
+        }
+        if (notLocked != null) {
+            predicates.add(criteriaBuilder.equal(user.get("isNotLocked"), notLocked));
+        }
+        query.select(criteriaBuilder.construct(BulkUserTarget.class, user.get(ID), user.get(USERNAME), user.get("role"),
+                        user.get("isActive"), user.get("isNotLocked"), user.get("tokenEpoch")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(criteriaBuilder.asc(user.get(ID)));
+        return entityManager.createQuery(query)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    // JSON name to attribute, in the order the fields are declared
+    private static Map<String, String> columns(Set<UserField> fields) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (UserField field : fields) {
+            columns.put(field.getJsonName(), field.getAttribute());
+        }
+        return columns;
+    }
+
+    private static List<Selection<?>> selections(Root<User> user, Map<String, String> columns) {
+        List<Selection<?>> selections = new ArrayList<>(columns.size());
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            selections.add(user.get(column.getValue()).alias(column.getKey()));
+        }
+        return selections;
+    }
+
+    private static Map<String, Object> toRow(Tuple tuple) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (TupleElement<?> element : tuple.getElements()) {
+            row.put(element.getAlias(), tuple.get(element));
+        }
+        return row;
+    }
+
+    // Users with a first sort value past the cursor. With a single key this is the row value
+    // comparison (k, id) > (v, lastId), one range of the (k, id) index; with more keys the
+    // range on k bounds the scan and the remaining keys only filter the users equal to v
+    private List<Map<String, Object>> findValuedRange(Map<String, String> columns, List<UserSortOrder> sortOrders, Object[] after, int limit) {
+        UserSortOrder first = sortOrders.get(0);
+        String key = "u." + first.getSortKey().getAttribute();
+        List<UserSortOrder> rest = sortOrders.subList(1, sortOrders.size());
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringBuilder where = new StringBuilder(key).append(" is not null");
+        if (after != null) {
+            String value = parameter(parameters, after[0]);
+            if (rest.isEmpty()) {
+                String lastId = parameter(parameters, after[1]);
+                where.append(" and (").append(key).append(", u.id) ").append(first.isAscending() ? ">" : "<")
+                        .append(" (").append(value).append(", ").append(lastId).append(")");
+            } else {
+                where.append(" and ").append(key).append(first.isAscending() ? " >= " : " <= ").append(value)
+                        .append(" and (").append(key).append(first.isAscending() ? " > " : " < ").append(value)
+                        .append(" or (").append(key).append(" = ").append(value)
+                        .append(" and ").append(seek(parameters, sortOrders, rest, after)).append("))");
+            }
+        }
+        // No null ordering on the first key: the range holds no nulls and the index order applies
+        String orderBy = key + (first.isAscending() ? " asc" : " desc") + orderBy(sortOrders, rest);
+        return findRows(columns, where, orderBy, parameters, limit);
+    }
+
+    // Users without a first sort value, ordered by the remaining keys and the id
+    private List<Map<String, Object>> findNullTail(Map<String, String> columns, List<UserSortOrder> sortOrders, Object[] after, int limit) {
+        List<UserSortOrder> rest = sortOrders.subList(1, sortOrders.size());
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringBuilder where = new StringBuilder("u.").append(sortOrders.get(0).getSortKey().getAttribute()).append(" is null");
+        if (after != null) {
+            where.append(" and ").append(seek(parameters, sortOrders, rest, after));
+        }
+        return findRows(columns, where, orderBy(sortOrders, rest).substring(2), parameters, limit);
+    }
+
+    private List<Map<String, Object>> findRows(Map<String, String> columns, CharSequence where, String orderBy,
+                                               Map<String, Object> parameters, int limit) {
+        StringBuilder hql = new StringBuilder("select ");
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            hql.append("u.").append(column.getValue()).append(" as ").append(column.getKey()).append(", ");
+        }
+        hql.setLength(hql.length() - 2);
+        hql.append(" from User u where ").append(where).append(" order by ").append(orderBy);
+        TypedQuery<Tuple> query = entityManager.createQuery(hql.toString(), Tuple.class).setMaxResults(limit);
+        parameters.forEach(query::setParameter);
+        List<Tuple> tuples = query.getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            rows.add(toRow(tuple));
+        }
+        return rows;
+    }
+
+    // ", k2 asc nulls last, ..., u.id asc"; the id follows the direction of the last key so a
+    // single key sort is one direction throughout and matches its (key, id) index
+    private static String orderBy(List<UserSortOrder> sortOrders, List<UserSortOrder> rest) {
+        StringBuilder orderBy = new StringBuilder();
+        for (UserSortOrder sortOrder : rest) {
+            orderBy.append(", u.").append(sortOrder.getSortKey().getAttribute())
+                    .append(sortOrder.isAscending() ? " asc" : " desc").append(" nulls last");
+        }
+        return orderBy.append(", u.id").append(idAscending(sortOrders) ? " asc" : " desc").toString();
+    }
+
+    // (k2 > v2 or k2 is null) or (k2 = v2 and k3 > v3 ...) or (k2 = v2 and ... and id > lastId)
+    // over the given keys, with < instead of > for descending keys. Nulls sort last, so a null
+    // is beyond every value and nothing is beyond a null
+    private static String seek(Map<String, Object> parameters, List<UserSortOrder> sortOrders, List<UserSortOrder> keys,
+                               Object[] after) {
+        List<String> alternatives = new ArrayList<>();
+        List<String> equalPrefix = new ArrayList<>();
+        for (int index = 0; index < keys.size(); index++) {
+            String key = "u." + keys.get(index).getSortKey().getAttribute();
+            Object value = after[index + 1];
+            if (value == null) {
+                equalPrefix.add(key + " is null");
+                continue;
+            }
+            String name = parameter(parameters, value);
+            List<String> alternative = new ArrayList<>(equalPrefix);
+            alternative.add("(" + key + (keys.get(index).isAscending() ? " > " : " < ") + name + " or " + key + " is null)");
+            alternatives.add(String.join(" and ", alternative));
+            equalPrefix.add(key + " = " + name);
+        }
+        equalPrefix.add("u.id" + (idAscending(sortOrders) ? " > " : " < ") + parameter(parameters, after[after.length - 1]));
+        alternatives.add(String.join(" and ", equalPrefix));
+        return "((" + String.join(") or (", alternatives) + "))";
+    }
+
+    private static boolean idAscending(List<UserSortOrder> sortOrders) {
+        return sortOrders.get(sortOrders.size() - 1).isAscending();
+    }
+
+    private static String parameter(Map<String, Object> parameters, Object value) {
+        String name = "p" + parameters.size();
+        parameters.put(name, value);
+        return ":" + name;
+    }
+}
@@ -1,16 +1,29 @@
 package com.supportportal.resource;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.supportportal.constant.SecurityConstant;
+import com.supportportal.domain.BulkUserRequest;
 import com.supportportal.domain.HttpResponse;
 import com.supportportal.domain.LoginRequest;
 import com.supportportal.domain.RegisterRequest;
 import com.supportportal.domain.User;
+import com.supportportal.domain.UserImportReport;
+import com.supportportal.domain.UserPage;
 import com.supportportal.domain.UserPrincipal;
+import com.supportportal.domain.VerifiedToken;
+import com.supportportal.enumeration.ExportFormat;
+import com.supportportal.enumeration.ImageSize;
+import com.supportportal.enumeration.UserField;
 import com.supportportal.exception.domain.*;
+import com.supportportal.service.ProfileImageService;
+import com.supportportal.service.TokenEpochService;
+import com.supportportal.service.UserExportService;
+import com.supportportal.service.UserImportService;
 import com.supportportal.service.UserService;
 import com.supportportal.utility.JWTTokenProvider;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -18,24 +31,35 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.mail.MessagingException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static com.supportportal.constant.FileConstant.*;
 import static org.springframework.util.MimeTypeUtils.IMAGE_JPEG_VALUE;
@@ -48,22 +72,46 @@ public class UserResource extends ExceptionHandling {
 
     public static final String EMAIL_SENT = " An email with a new password was sent to: ";
     public static final String USER_DELETED_SUCCESSFULLY = "User deleted successfully";
+    public static final String TOKEN_REFRESHED = "Token refreshed";
+    public static final String USERS_UPDATED = " users updated";
+    public static final String USERS_DELETED = " users deleted";
+    public static final String FIELDS_DESCRIPTION = "Comma separated fields to return, e.g. firstName,lastName,username,role,active,notLocked. " +
+            "Defaults to every field; the password is never returned";
+    public static final String PROJECTED_USER_DESCRIPTION = "The requested fields of the user keyed by name, see fields";
+    public static final String PROJECTED_USER_EXAMPLE = "{\"id\":1,\"userId\":\"01HMZ3Q8X5M2N4P6R7S9T0V1WX\",\"firstName\":\"Jane\"," +
+            "\"lastName\":\"Doe\",\"username\":\"jdoe\",\"email\":\"jane.doe@example.com\"," +
+            "\"profileImageUrl\":\"http://localhost:8081/user/image/profile/jdoe\",\"lastLoginDate\":null," +
+            "\"llastLoginDateDisplay\":null,\"joinDate\":\"2024-01-01T00:00:00.000+00:00\",\"role\":\"ROLE_USER\"," +
+            "\"authorities\":[\"user:read\"],\"active\":true,\"notLocked\":true}";
+    public static final String UNSUPPORTED_EXPORT_FORMAT = "Unsupported export format: ";
+    public static final String UNSUPPORTED_IMPORT_FORMAT = "Unsupported import format: ";
+    public static final int PROFILE_IMAGE_MAX_AGE_DAYS = 365;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
     private UserService userService;
     private AuthenticationManager authenticationManager;
     private JWTTokenProvider jwtTokenProvider;
+    private TokenEpochService tokenEpochService;
+    private UserExportService userExportService;
+    private UserImportService userImportService;
+    private ProfileImageService profileImageService;
 
     @Autowired
-    public UserResource(UserService userService, AuthenticationManager authenticationManager, JWTTokenProvider jwtTokenProvider) {
+    public UserResource(UserService userService, AuthenticationManager authenticationManager, JWTTokenProvider jwtTokenProvider, TokenEpochService tokenEpochService, UserExportService userExportService, UserImportService userImportService, ProfileImageService profileImageService) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.tokenEpochService = tokenEpochService;
+        this.userExportService = userExportService;
+        this.userImportService = userImportService;
+        this.profileImageService = profileImageService;
     }
 
     @PostMapping(value = "/login", consumes = "application/json")
     @Operation(summary = "User login", description = "Authenticate user with username and password")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Login successful",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(type = "object", description = PROJECTED_USER_DESCRIPTION, example = PROJECTED_USER_EXAMPLE))),
             @ApiResponse(responseCode = "401", description = "Invalid credentials",
                     content = @Content)
     })
@@ -72,12 +120,42 @@ public class UserResource extends ExceptionHandling {
         required = true,
         content = @Content(schema = @Schema(implementation = LoginRequest.class))
     )
-    public ResponseEntity<User> login(@RequestBody @Valid LoginRequest loginRequest) {
-        authenticate(loginRequest.getUsername(), loginRequest.getPassword());
-        User loginUser = userService.findUserByUsername(loginRequest.getUsername());
-        UserPrincipal userPrincipal = new UserPrincipal(loginUser);
+    public ResponseEntity<Map<String, Object>> login(
+            @RequestBody @Valid LoginRequest loginRequest,
+            @Parameter(description = FIELDS_DESCRIPTION) @RequestParam(value = "fields", required = false) String fields
+    ) throws UnknownFieldException {
+        Set<UserField> userFields = UserField.parse(fields);
+        UserPrincipal userPrincipal = authenticate(loginRequest.getUsername(), loginRequest.getPassword());
+        User loginUser = userPrincipal.getUser();
         HttpHeaders jwtHeader = getJwtHeader(userPrincipal);
-        return new ResponseEntity<>(loginUser, jwtHeader, HttpStatus.OK);
+        return new ResponseEntity<>(UserField.project(loginUser, userFields), jwtHeader, HttpStatus.OK);
+    }
+
+    @PostMapping("/token/refresh")
+    @Operation(summary = "Refresh access token", description = "Issue a new short-lived access token from a valid refresh token, " +
+            "with the current role of the user; locked, deactivated and deleted users are refused")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Access token issued in the Jwt-Token header",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = HttpResponse.class))),
+            @ApiResponse(responseCode = "401", description = "Refresh token invalid, expired or revoked, or user locked, inactive or deleted",
+                    content = @Content)
+    })
+    public ResponseEntity<HttpResponse> refreshToken(@Parameter(description = "Refresh token returned by login") @RequestHeader(SecurityConstant.REFRESH_TOKEN_HEADER) String refreshToken) {
+        VerifiedToken verifiedToken = jwtTokenProvider.verifyRefreshToken(refreshToken);
+        if (!tokenEpochService.isCurrent(verifiedToken.getSubject(), verifiedToken.getTokenEpoch())) {
+            throw new JWTVerificationException(SecurityConstant.TOKEN_CANNOT_BE_VERIFIED);
+        }
+        // Refreshes are rare enough to check the stored user: the epoch map of this instance may
+        // miss revocations made on another one, and the new token must carry the current role
+        UserPrincipal userPrincipal = userService.findUserPrincipal(verifiedToken.getSubject());
+        if (userPrincipal == null || !userPrincipal.isAccountNonLocked() || !userPrincipal.isEnabled()
+                || verifiedToken.getTokenEpoch() < userPrincipal.getTokenEpoch()) {
+            throw new JWTVerificationException(SecurityConstant.TOKEN_CANNOT_BE_VERIFIED);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(SecurityConstant.JWT_TOKEN_HEADER, jwtTokenProvider.generateJwtToken(userPrincipal));
+        HttpStatus httpStatus = HttpStatus.OK;
+        return new ResponseEntity<>(new HttpResponse(httpStatus.value(), httpStatus, httpStatus.getReasonPhrase().toUpperCase(), TOKEN_REFRESHED.toUpperCase()), headers, httpStatus);
     }
 
     @PostMapping(value = "/register", consumes = "application/json")
@@ -117,7 +195,7 @@ public class UserResource extends ExceptionHandling {
             @Parameter(description = "Account active status") @RequestParam("isActive") String isActive,
             @Parameter(description = "Account locked status") @RequestParam("isNonLocked") String isNonLocked,
             @Parameter(description = "Profile image file") @RequestParam(value = "profileImage", required = false) MultipartFile profileImage
-    ) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
+    ) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
         User newUser = userService.addNewUser(firstName, lastName, username, email, role, Boolean.parseBoolean(isNonLocked), Boolean.parseBoolean(isActive), profileImage);
         return new ResponseEntity<>(newUser, HttpStatus.OK);
     }
@@ -143,7 +221,7 @@ public class UserResource extends ExceptionHandling {
             @Parameter(description = "Updated active status") @RequestParam("isActive") String isActive,
             @Parameter(description = "Updated locked status") @RequestParam("isNonLocked") String isNonLocked,
             @Parameter(description = "Updated profile image") @RequestParam(value = "profileImage", required = false) MultipartFile profileImage
-    ) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
+    ) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
         User updatedUser = userService.updateUser(currentUsername, firstName, lastName, username, email, role, Boolean.parseBoolean(isNonLocked), Boolean.parseBoolean(isActive), profileImage);
         return new ResponseEntity<>(updatedUser, HttpStatus.OK);
     }
@@ -159,24 +237,59 @@ public class UserResource extends ExceptionHandling {
     public ResponseEntity<User> updateProfileImage(
             @Parameter(description = "Username") @RequestParam("username") String username,
             @Parameter(description = "Profile image file") @RequestParam(value = "profileImage") MultipartFile profileImage
-    ) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
+    ) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
         User user = userService.updateProfileImage(username, profileImage);
         return new ResponseEntity<>(user, HttpStatus.OK);
     }
 
     @GetMapping(path="/image/{username}/{filename}", produces = IMAGE_JPEG_VALUE)
-    @Operation(summary = "Get profile image", description = "Retrieve user's profile image by username and filename")
+    @Operation(summary = "Get profile image", description = "Stream user's profile image from disk in the requested size. Supports " +
+            "conditional requests (ETag, Last-Modified) and byte ranges; URLs carrying the current version are cacheable for a year " +
+            "once the requested size has been generated, the upload is served as is until then")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Image retrieved successfully",
                     content = @Content(mediaType = "image/jpeg")),
+            @ApiResponse(responseCode = "206", description = "Requested byte range of the image",
+                    content = @Content(mediaType = "image/jpeg")),
+            @ApiResponse(responseCode = "304", description = "Image not modified",
+                    content = @Content),
+            @ApiResponse(responseCode = "400", description = "Unknown size",
+                    content = @Content),
             @ApiResponse(responseCode = "404", description = "Image not found",
                     content = @Content)
     })
-    public byte[] getProfileImage(
+    public ResponseEntity<Resource> getProfileImage(
             @Parameter(description = "Username") @PathVariable("username") String username,
-            @Parameter(description = "Image filename") @PathVariable("filename") String filename
+            @Parameter(description = "Image filename") @PathVariable("filename") String filename,
+            @Parameter(description = "thumbnail (96px), medium (320px) or original (at most 1024px)") @RequestParam(value = "size", defaultValue = "original") String size,
+            @Parameter(description = "Image version, as in the profile image URL") @RequestParam(value = PROFILE_IMAGE_VERSION_PARAMETER, required = false) String version
     ) throws IOException {
-        return Files.readAllBytes(Paths.get(USER_FOLDER + username + FORWARD_SLASH + filename));
+        ImageSize imageSize = ImageSize.fromParameter(size);
+        if (imageSize == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        Path original = profileImageService.find(username, filename);
+        if (original == null) {
+            return ResponseEntity.notFound().build();
+        }
+        BasicFileAttributes originalAttributes = Files.readAttributes(original, BasicFileAttributes.class);
+        String currentVersion = ProfileImageService.versionOf(originalAttributes);
+        // The upload itself is served until its variants have been generated
+        Path image = ProfileImageService.variantOf(original, currentVersion, imageSize);
+        boolean variant = !image.equals(original);
+        BasicFileAttributes attributes = variant ? Files.readAttributes(image, BasicFileAttributes.class) : originalAttributes;
+        // A versioned URL of a generated variant always points at the same bytes; any other one
+        // must be revalidated, the upload behind it is replaced by its variant soon
+        CacheControl cacheControl = variant && currentVersion.equals(version)
+                ? CacheControl.maxAge(PROFILE_IMAGE_MAX_AGE_DAYS, TimeUnit.DAYS).cachePublic()
+                : CacheControl.noCache().cachePublic();
+        // Not modified and range requests are answered by Spring from these headers, and the
+        // file is copied to the response through a small buffer instead of read into memory
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(variant ? currentVersion + "-" + imageSize.getParameter() : currentVersion)
+                .lastModified(attributes.lastModifiedTime().toMillis())
+                .body(new FileSystemResource(image));
     }
 
     @GetMapping(path="/image/profile/{username}", produces = IMAGE_JPEG_VALUE)
@@ -206,25 +319,93 @@ public class UserResource extends ExceptionHandling {
     @Operation(summary = "Find user by username", description = "Retrieve user information by username")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "User found",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(type = "object", description = PROJECTED_USER_DESCRIPTION, example = PROJECTED_USER_EXAMPLE))),
             @ApiResponse(responseCode = "404", description = "User not found",
                     content = @Content)
     })
-    public ResponseEntity<User> getUser(@Parameter(description = "Username to search") @PathVariable("username") String username) {
-        User user = userService.findUserByUsername(username);
+    public ResponseEntity<Map<String, Object>> getUser(
+            @Parameter(description = "Username to search") @PathVariable("username") String username,
+            @Parameter(description = FIELDS_DESCRIPTION) @RequestParam(value = "fields", required = false) String fields
+    ) throws UnknownFieldException {
+        Map<String, Object> user = userService.findUserFields(username, UserField.parse(fields));
         return new ResponseEntity<>(user, HttpStatus.OK);
     }
 
     @GetMapping("/list")
     @PreAuthorize("hasAnyAuthority('user:read')")
-    @Operation(summary = "List users", description = "Retrieve list of users (USER sees only themselves, others see all users)")
+    @Operation(summary = "List users", description = "Retrieve one page of users (USER sees only themselves, others see all users). " +
+            "The cursor of the next page is returned in the X-Next-Cursor header, the total in X-Total-Count when requested")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Users retrieved successfully",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = User.class)))
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(
+                            schema = @Schema(type = "object", description = PROJECTED_USER_DESCRIPTION, example = PROJECTED_USER_EXAMPLE)))),
+            @ApiResponse(responseCode = "400", description = "Invalid page size, sort or cursor",
+                    content = @Content)
+    })
+    public ResponseEntity<List<Map<String, Object>>> getAllUsers(
+            @Parameter(description = "Users per page, at most 500") @RequestParam(value = "size", defaultValue = "50") int size,
+            @Parameter(description = "Comma separated sort attributes, '-' prefix for descending: username, email, firstName, lastName, role, joinDate") @RequestParam(value = "sort", defaultValue = "username") String sort,
+            @Parameter(description = "X-Next-Cursor of the previous page") @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Also count all users") @RequestParam(value = "includeTotal", defaultValue = "false") boolean includeTotal,
+            @Parameter(description = FIELDS_DESCRIPTION) @RequestParam(value = "fields", required = false) String fields
+    ) throws InvalidPageRequestException, UnknownFieldException {
+        UserPage page = userService.getUsers(size, sort, cursor, includeTotal, UserField.parse(fields));
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        if (page.getTotalCount() != null) {
+            headers.add(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalCount()));
+        }
+        return new ResponseEntity<>(page.getUsers(), headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyAuthority('user:read')")
+    @Operation(summary = "Export users", description = "Stream every visible user as NDJSON (one JSON object per line) or CSV, without passwords")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Users streamed",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "400", description = "Unsupported format",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Too many exports in progress",
+                    content = @Content)
     })
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getUsers();
-        return new ResponseEntity<>(users, HttpStatus.OK);
+    public void exportUsers(
+            @Parameter(description = "ndjson or csv") @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            HttpServletResponse response
+    ) throws UnsupportedExportFormatException, UserNotFoundException, IOException {
+        ExportFormat exportFormat = ExportFormat.fromParameter(format);
+        if (exportFormat == null) {
+            throw new UnsupportedExportFormatException(UNSUPPORTED_EXPORT_FORMAT + format);
+        }
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + exportFormat.getExtension() + "\"");
+        userExportService.exportUsers(exportFormat, response.getOutputStream());
+    }
+
+    @PostMapping("/import")
+    @PreAuthorize("hasAnyAuthority('user:create')")
+    @Operation(summary = "Import users", description = "Create users from an NDJSON or CSV request body with the export's fields " +
+            "(firstName, lastName, username, email, role, active, notLocked). Every row is reported as created or failed; " +
+            "imported users set their password through a password reset")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished, see the report for rows that failed",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = UserImportReport.class))),
+            @ApiResponse(responseCode = "400", description = "Unsupported format",
+                    content = @Content)
+    })
+    public ResponseEntity<UserImportReport> importUsers(
+            @Parameter(description = "ndjson or csv") @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            HttpServletRequest request
+    ) throws UnsupportedExportFormatException, UserNotFoundException, IOException {
+        ExportFormat importFormat = ExportFormat.fromParameter(format);
+        if (importFormat == null) {
+            throw new UnsupportedExportFormatException(UNSUPPORTED_IMPORT_FORMAT + format);
+        }
+        UserImportReport report = userImportService.importUsers(importFormat, request.getInputStream());
+        return new ResponseEntity<>(report, HttpStatus.OK);
     }
 
     @GetMapping("/resetPassword/{email}")
@@ -256,6 +437,39 @@ public class UserResource extends ExceptionHandling {
         return response(HttpStatus.NO_CONTENT, USER_DELETED_SUCCESSFULLY);
     }
 
+    @PostMapping(value = "/bulk/update", consumes = "application/json")
+    @PreAuthorize("hasAnyAuthority('user:update')")
+    @Operation(summary = "Update users in bulk", description = "Lock, unlock, activate, deactivate or change the role of every user " +
+            "selected by usernames and/or a role, active and notLocked filter, with one statement per thousand users")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Users updated",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = HttpResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid selection or action",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Not allowed to change users with one of the selected roles",
+                    content = @Content)
+    })
+    public ResponseEntity<HttpResponse> updateUsers(@RequestBody BulkUserRequest request) throws UserNotFoundException, InvalidBulkRequestException {
+        int updated = userService.updateUsers(request);
+        return response(HttpStatus.OK, updated + USERS_UPDATED);
+    }
+
+    @PostMapping(value = "/bulk/delete", consumes = "application/json")
+    @PreAuthorize("hasAnyAuthority('user:delete')")
+    @Operation(summary = "Delete users in bulk", description = "Delete every user selected by usernames and/or a role, active and notLocked filter")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Users deleted",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = HttpResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid selection",
+                    content = @Content),
+            @ApiResponse(responseCode = "404", description = "Not allowed to delete users with one of the selected roles",
+                    content = @Content)
+    })
+    public ResponseEntity<HttpResponse> deleteUsers(@RequestBody BulkUserRequest request) throws UserNotFoundException, InvalidBulkRequestException {
+        int deleted = userService.deleteUsers(request);
+        return response(HttpStatus.OK, deleted + USERS_DELETED);
+    }
+
     private ResponseEntity<HttpResponse> response(HttpStatus httpStatus, String message) {
         return new ResponseEntity<>(new HttpResponse(httpStatus.value(), httpStatus, httpStatus.getReasonPhrase().toUpperCase(), message.toUpperCase()), httpStatus);
     }
@@ -263,11 +477,15 @@ public class UserResource extends ExceptionHandling {
     private HttpHeaders getJwtHeader(UserPrincipal userPrincipal) {
         HttpHeaders headers = new HttpHeaders();
         headers.add(SecurityConstant.JWT_TOKEN_HEADER, jwtTokenProvider.generateJwtToken(userPrincipal));
+        headers.add(SecurityConstant.REFRESH_TOKEN_HEADER, jwtTokenProvider.generateRefreshToken(userPrincipal));
         return headers;
     }
 
-    private void authenticate(String username, String password) {
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
+    // The principal loaded by UserDetailsService during authentication is reused for the token
+    // and the response body, so a login costs a single user lookup.
+    private UserPrincipal authenticate(String username, String password) {
+        Authentication authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
+        return (UserPrincipal) authentication.getPrincipal();
     }
 
 }
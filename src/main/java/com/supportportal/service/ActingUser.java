@@ -0,0 +1,104 @@
+package com.supportportal.service;
+
+import com.supportportal.domain.JwtAuthenticationDetails;
+import com.supportportal.domain.User;
+import com.supportportal.domain.UserPrincipal;
+import com.supportportal.enumeration.Role;
+import com.supportportal.repository.UserRepository;
+import com.supportportal.utility.UserPrincipalCache;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+/**
+ * The authenticated user a request acts as, resolved at most once per request and shared by
+ * every permission check made while handling it. Reads use the role of the verified token when
+ * it carries one. Changes are checked against the stored user instead, loaded through the
+ * principal cache: the token epochs of this instance may miss a revocation, and a token must
+ * never let a deleted, locked, deactivated or demoted user change anything.
+ */
+@Component
+@RequestScope
+public class ActingUser {
+
+    private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
+
+    private boolean authenticationResolved;
+    private String username;
+    private Role role;
+    private boolean userLoaded;
+    private User user;
+
+    public ActingUser(UserRepository userRepository, UserPrincipalCache userPrincipalCache) {
+        this.userRepository = userRepository;
+        this.userPrincipalCache = userPrincipalCache;
+    }
+
+    /**
+     * @return the username, or null if the request is not authenticated
+     */
+    public String getUsername() {
+        resolveAuthentication();
+        return username;
+    }
+
+    /**
+     * @return the role, or null if the request is not authenticated or the user no longer exists
+     */
+    public Role getRole() {
+        resolveAuthentication();
+        if (role == null && getUser() != null) {
+            role = Role.valueOf(user.getRole().toUpperCase());
+        }
+        return role;
+    }
+
+    /**
+     * @return the role of the stored user, for permission checks of changes, or null if the
+     *         request is not authenticated or the user no longer exists, is locked or is inactive
+     */
+    public Role getStoredRole() {
+        User storedUser = getUser();
+        if (storedUser == null || !storedUser.isNotLocked() || !storedUser.isActive()) {
+            return null;
+        }
+        return Role.valueOf(storedUser.getRole().toUpperCase());
+    }
+
+    /**
+     * @return a detached copy of the user, for reads only, or null if there is none
+     */
+    public User getUser() {
+        resolveAuthentication();
+        if (!userLoaded && username != null) {
+            UserPrincipal userPrincipal = userPrincipalCache.getOrLoad(username, userRepository::findUserByUsername);
+            user = userPrincipal == null ? null : userPrincipal.getUser();
+            userLoaded = true;
+        }
+        return user;
+    }
+
+    private void resolveAuthentication() {
+        if (authenticationResolved) {
+            return;
+        }
+        authenticationResolved = true;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return;
+        }
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof UserDetails) {
+            username = ((UserDetails) principal).getUsername();
+        } else if (principal instanceof String) {
+            username = (String) principal;
+        }
+        if (username != null && authentication.getDetails() instanceof JwtAuthenticationDetails) {
+            role = ((JwtAuthenticationDetails) authentication.getDetails()).getRole();
+        }
+    }
+}
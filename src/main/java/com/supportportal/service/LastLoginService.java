@@ -0,0 +1,97 @@
+package com.supportportal.service;
+
+import com.supportportal.domain.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for last login dates. Logins only update the in-memory user and a map
+ * entry per username; repeated logins of the same user are coalesced and the map is written
+ * out periodically in JDBC batches, and once more on shutdown.
+ */
+@Service
+public class LastLoginService {
+
+    private static final String UPDATE_LAST_LOGIN =
+            "update \"user\" set l_last_login_date_display = last_login_date, last_login_date = ? where username = ?";
+
+    private final Logger LOGGER = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, Date> pendingLogins = new ConcurrentHashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    public LastLoginService(JdbcTemplate jdbcTemplate, @Value("${last-login.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Shifts the previous login into the display date of the given user and queues the new
+     * login date for the next flush.
+     */
+    public void recordLogin(User user) {
+        Date loginDate = new Date();
+        user.setLLastLoginDateDisplay(user.getLastLoginDate());
+        user.setLastLoginDate(loginDate);
+        pendingLogins.merge(user.getUsername(), loginDate, LastLoginService::latest);
+    }
+
+    @Scheduled(fixedDelayString = "${last-login.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        if (pendingLogins.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(Math.min(pendingLogins.size(), batchSize));
+        for (String username : pendingLogins.keySet()) {
+            Date loginDate = pendingLogins.remove(username);
+            if (loginDate != null) {
+                batch.add(new Object[]{new Timestamp(loginDate.getTime()), username});
+            }
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    private void write(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN, batch);
+            LOGGER.debug("Flushed {} last login dates", batch.size());
+        } catch (DataAccessException e) {
+            LOGGER.error("Could not flush {} last login dates, retrying on next flush: {}", batch.size(), e.getMessage());
+            for (Object[] login : batch) {
+                Date loginDate = new Date(((Timestamp) login[0]).getTime());
+                pendingLogins.merge((String) login[1], loginDate, LastLoginService::latest);
+            }
+        }
+    }
+
+    private static Date latest(Date first, Date second) {
+        return second.after(first) ? second : first;
+    }
+}
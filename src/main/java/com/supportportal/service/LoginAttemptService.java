@@ -1,53 +1,26 @@
 package com.supportportal.service;
 
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ExecutionException;
-
-import static java.util.concurrent.TimeUnit.MINUTES;
-
 @Service
 public class LoginAttemptService {
     private static final int MAXIMUM_NUMBER_OF_ATTEMPTS = 5;
-    private static final int ATTEMPT_INCREMENT= 1;
-    private LoadingCache<String, Integer> loginAttemptCache;
+    private final LoginAttemptStore loginAttemptStore;
 
-    public LoginAttemptService() {
-        super();
-       loginAttemptCache = CacheBuilder.newBuilder().expireAfterWrite(15, MINUTES)
-                .maximumSize(100).build(new CacheLoader<String, Integer>() {
-                   public Integer load(String key) throws Exception {
-                       return 0;
-                   }
-               });
+    public LoginAttemptService(LoginAttemptStore loginAttemptStore) {
+        this.loginAttemptStore = loginAttemptStore;
     }
 
     public void evictUserFromLoginAttemptCache(String username){
-        loginAttemptCache.invalidate(username);
+        loginAttemptStore.reset(username);
     }
 
     public void addUserToLoginAttemptCache(String username){
-        int attempts = 0;
-        try{
-            attempts = ATTEMPT_INCREMENT + loginAttemptCache.get(username);
-        }catch (ExecutionException e){
-            e.printStackTrace();
-        }
-
-        loginAttemptCache.put(username, attempts);
-
+        loginAttemptStore.recordFailure(username);
     }
 
     public boolean hasExceededMaxAttempts(String username){
-        try{
-            return loginAttemptCache.get(username) >= MAXIMUM_NUMBER_OF_ATTEMPTS;
-        }catch (ExecutionException e){
-            e.printStackTrace();
-        }
-        return false;
+        return loginAttemptStore.getAttempts(username) >= MAXIMUM_NUMBER_OF_ATTEMPTS;
     }
 }
@@ -0,0 +1,22 @@
+package com.supportportal.service;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Where failed login attempts are counted. The in-memory store keeps the counters of this
+ * instance only; the JDBC store shares them between every instance using the same database.
+ * Select one with {@code login-attempt.store=memory|jdbc}.
+ */
+public interface LoginAttemptStore {
+
+    long ATTEMPT_WINDOW_MILLIS = MINUTES.toMillis(15);
+
+    void recordFailure(String username);
+
+    /**
+     * Failed attempts of the username within the last {@link #ATTEMPT_WINDOW_MILLIS}.
+     */
+    int getAttempts(String username);
+
+    void reset(String username);
+}
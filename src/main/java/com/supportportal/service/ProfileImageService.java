@@ -0,0 +1,345 @@
+package com.supportportal.service;
+
+import com.supportportal.enumeration.ImageSize;
+import com.supportportal.exception.domain.ImageProcessingUnavailableException;
+import com.supportportal.exception.domain.NotAnImageFileException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.supportportal.constant.FileConstant.*;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Stores uploaded profile images under the user folder and finds them again for serving.
+ * <p>
+ * An upload is only copied to disk and its header checked on the request thread, then served
+ * as is. Decoding it and re-encoding it as JPEG in every {@link ImageSize} runs afterwards on a
+ * small fixed pool with a bounded queue, so small avatar slots are served a few kilobytes
+ * instead of the camera original as soon as the variants exist. Uploads arriving while the
+ * queue is full are rejected with 503.
+ * <p>
+ * Every stored image has a version derived from the modification time and size of the upload.
+ * It is put in the image URL so the URL changes whenever the image does, and is part of the
+ * variant file names, so variants of an older upload are never served for a newer one.
+ * <p>
+ * Within a transaction, an upload only replaces the stored image once the transaction that
+ * saves its URL commits. Until then, or for good if it rolls back, the previous image and its
+ * variants stay in place for the URL still in the database.
+ */
+@Service
+public class ProfileImageService {
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(getClass());
+
+    private final Path userFolder = Paths.get(USER_FOLDER).toAbsolutePath().normalize();
+
+    private final ThreadPoolExecutor executor;
+
+    private final long maximumPixels;
+
+    public ProfileImageService(@Value("${profile-image.threads:2}") int threads,
+                               @Value("${profile-image.queue-capacity:16}") int queueCapacity,
+                               @Value("${profile-image.max-megapixels:50}") int maximumMegapixels) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "profile-image-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.maximumPixels = maximumMegapixels * 1_000_000L;
+    }
+
+    /**
+     * Replaces the profile image of the user with the uploaded one, after the surrounding
+     * transaction commits if there is one, and returns the version of the new image. The
+     * variants are generated in the background.
+     */
+    public String store(String username, InputStream image) throws IOException, NotAnImageFileException {
+        Path folder = folderOf(username);
+        if (folder == null) {
+            throw new IOException("Invalid username for a profile image: " + username);
+        }
+        // Shed before taking the upload, its variants could not be generated anyway
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new ImageProcessingUnavailableException(IMAGE_PROCESSING_BUSY);
+        }
+        if (!Files.exists(folder)) {
+            Files.createDirectories(folder);
+            LOGGER.info(DIRECTORY_CREATED + folder);
+        }
+        Path original = folder.resolve(username + DOT + JPG_EXTENSION);
+        Path upload = Files.createTempFile(folder, username, ".tmp");
+        String version;
+        try {
+            Files.copy(image, upload, REPLACE_EXISTING);
+            checkHeader(upload, username);
+            // The move keeps the modification time, so this is the version of the stored image too
+            version = versionOf(Files.readAttributes(upload, BasicFileAttributes.class));
+        } catch (IOException | NotAnImageFileException | RuntimeException e) {
+            Files.deleteIfExists(upload);
+            throw e;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            replace(original, upload, version);
+                        } else {
+                            Files.deleteIfExists(upload);
+                        }
+                    } catch (IOException e) {
+                        LOGGER.warn("Could not replace {} with the upload {}: {}", original, upload, e.getMessage());
+                    }
+                }
+            });
+        } else {
+            replace(original, upload, version);
+        }
+        return version;
+    }
+
+    /**
+     * The stored original image, or null when there is none or the names point outside the
+     * user's folder.
+     */
+    public Path find(String username, String filename) {
+        Path folder = folderOf(username);
+        if (folder == null) {
+            return null;
+        }
+        Path image = folder.resolve(filename).normalize();
+        if (!folder.equals(image.getParent()) || !Files.isRegularFile(image)) {
+            return null;
+        }
+        return image;
+    }
+
+    /**
+     * The variant of a stored original in the given version, or the original itself while the
+     * variant is being generated and for images uploaded before variants existed.
+     */
+    public static Path variantOf(Path original, String version, ImageSize size) {
+        Path variant = variantPath(original, version, size);
+        return Files.isRegularFile(variant) ? variant : original;
+    }
+
+    public static String versionOf(BasicFileAttributes attributes) {
+        return Long.toString(attributes.lastModifiedTime().toMillis(), 36) + Long.toString(attributes.size(), 36);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static Path variantPath(Path original, String version, ImageSize size) {
+        return original.resolveSibling(stemOf(original) + "-" + version + "-" + size.getParameter() + DOT + JPG_EXTENSION);
+    }
+
+    private static String stemOf(Path original) {
+        String filename = original.getFileName().toString();
+        int extension = filename.lastIndexOf('.');
+        return extension < 0 ? filename : filename.substring(0, extension);
+    }
+
+    private void storeVariants(Path original, String version) {
+        try {
+            BufferedImage image;
+            try (InputStream input = Files.newInputStream(original)) {
+                image = decode(input, original.getFileName().toString());
+            }
+            // A newer upload replaced the file meanwhile, its own task generates its variants
+            if (!version.equals(versionOf(Files.readAttributes(original, BasicFileAttributes.class)))) {
+                return;
+            }
+            for (ImageSize size : ImageSize.values()) {
+                write(resize(image, size), variantPath(original, version, size));
+            }
+        } catch (IOException | NotAnImageFileException | RuntimeException e) {
+            LOGGER.warn("Could not generate the variants of {}, serving the upload as is: {}", original, e.getMessage());
+        }
+    }
+
+    private void replace(Path original, Path upload, String version) throws IOException {
+        try {
+            Files.move(upload, original, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+        deleteVariantsOtherThan(original, version);
+        try {
+            executor.execute(() -> storeVariants(original, version));
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("No room to generate the variants of {}, serving the upload as is", original);
+        }
+    }
+
+    // Variants of earlier uploads are never served again
+    private void deleteVariantsOtherThan(Path original, String version) throws IOException {
+        String prefix = stemOf(original) + "-";
+        String current = prefix + version + "-";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(original.getParent())) {
+            for (Path file : files) {
+                String filename = file.getFileName().toString();
+                if (filename.startsWith(prefix) && !filename.startsWith(current) && filename.endsWith(DOT + JPG_EXTENSION)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // Reads the format and dimensions only, no pixel is decoded on the request thread
+    private void checkHeader(Path upload, String username) throws IOException, NotAnImageFileException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(upload.toFile())) {
+            ImageReader reader = readerOf(input, username);
+            try {
+                checkDimensions(reader);
+            } catch (IIOException e) {
+                throw new NotAnImageFileException(username + NOT_AN_IMAGE_FILE);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Decodes at no more than twice the largest variant, skipping pixels of larger images
+    // while reading instead of holding them all in memory
+    private BufferedImage decode(InputStream upload, String name) throws IOException, NotAnImageFileException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(upload)) {
+            ImageReader reader = readerOf(input, name);
+            try {
+                int maxDimension = checkDimensions(reader);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, maxDimension / (2 * ImageSize.ORIGINAL.getMaxDimension()));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } catch (IIOException e) {
+                throw new NotAnImageFileException(name + NOT_AN_IMAGE_FILE);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader readerOf(ImageInputStream input, String name) throws NotAnImageFileException {
+        Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+        if (readers == null || !readers.hasNext()) {
+            throw new NotAnImageFileException(name + NOT_AN_IMAGE_FILE);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    // Returns the larger dimension of the first image
+    private int checkDimensions(ImageReader reader) throws IOException, NotAnImageFileException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if ((long) width * height > maximumPixels) {
+            throw new NotAnImageFileException(String.format(IMAGE_TOO_LARGE, maximumPixels / 1_000_000));
+        }
+        return Math.max(width, height);
+    }
+
+    private static BufferedImage resize(BufferedImage image, ImageSize size) {
+        int x = 0;
+        int y = 0;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (size.isSquare()) {
+            int side = Math.min(width, height);
+            x = (width - side) / 2;
+            y = (height - side) / 2;
+            width = side;
+            height = side;
+        }
+        double scale = Math.min(1.0, (double) size.getMaxDimension() / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        // Halving step by step keeps bilinear scaling from skipping most source pixels
+        BufferedImage current = image.getSubimage(x, y, width, height);
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width > targetWidth || height > targetHeight);
+        return current;
+    }
+
+    // JPEG has no alpha channel, transparent areas become white
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    // Written next to the target and moved over it, so readers never see a partial file
+    private static void write(BufferedImage image, Path file) throws IOException {
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(JPG_EXTENSION).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(temporary.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        Files.move(temporary, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private Path folderOf(String username) {
+        Path folder = userFolder.resolve(username).normalize();
+        return userFolder.equals(folder.getParent()) ? folder : null;
+    }
+}
@@ -0,0 +1,159 @@
+package com.supportportal.service;
+
+import com.supportportal.domain.RevokedTokenEpoch;
+import com.supportportal.domain.User;
+import com.supportportal.repository.RevokedTokenEpochRepository;
+import com.supportportal.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the current token epoch of every user whose tokens were ever revoked, so the
+ * authorization filter can reject stale tokens with one map lookup instead of a query.
+ * Users that are absent from the map are at epoch 0.
+ * <p>
+ * Usernames that are given up by a delete or a rename keep their last epoch in
+ * {@code revoked_token_epoch}, since no user row carries it anymore.
+ */
+@Service
+public class TokenEpochService {
+
+    private final Logger LOGGER = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, Long> epochs = new ConcurrentHashMap<>();
+
+    private final UserRepository userRepository;
+
+    private final RevokedTokenEpochRepository revokedTokenEpochRepository;
+
+    public TokenEpochService(UserRepository userRepository, RevokedTokenEpochRepository revokedTokenEpochRepository) {
+        this.userRepository = userRepository;
+        this.revokedTokenEpochRepository = revokedTokenEpochRepository;
+    }
+
+    @PostConstruct
+    public void loadEpochs() {
+        List<RevokedTokenEpoch> removedUsernames = revokedTokenEpochRepository.findAll();
+        for (RevokedTokenEpoch removedUsername : removedUsernames) {
+            epochs.merge(removedUsername.getUsername(), removedUsername.getEpoch(), Math::max);
+        }
+        List<Object[]> revokedEpochs = userRepository.findRevokedTokenEpochs();
+        for (Object[] revokedEpoch : revokedEpochs) {
+            epochs.merge((String) revokedEpoch[0], (Long) revokedEpoch[1], Math::max);
+        }
+        LOGGER.info("Loaded token epochs for {} users and {} removed usernames", revokedEpochs.size(), removedUsernames.size());
+    }
+
+    public long currentEpoch(String username) {
+        return epochs.getOrDefault(username, 0L);
+    }
+
+    public boolean isCurrent(String username, long tokenEpoch) {
+        return tokenEpoch >= currentEpoch(username);
+    }
+
+    /**
+     * Moves the user to a new epoch so every token issued so far is rejected. The entity is
+     * updated right away; the in-memory epoch is published once the surrounding transaction
+     * commits, so a rolled back change never revokes anything.
+     *
+     * @param previousUsernames usernames the user was known by before this change, whose
+     *                          tokens must be revoked as well; the ones the user no longer
+     *                          holds keep the new epoch in {@code revoked_token_epoch}
+     */
+    public void revokeTokens(User user, String... previousUsernames) {
+        long epoch = currentEpoch(user.getUsername());
+        if (user.getTokenEpoch() != null) {
+            epoch = Math.max(epoch, user.getTokenEpoch());
+        }
+        for (String previousUsername : previousUsernames) {
+            epoch = Math.max(epoch, currentEpoch(previousUsername));
+        }
+        long nextEpoch = epoch + 1;
+        user.setTokenEpoch(nextEpoch);
+        String username = user.getUsername();
+        Map<String, Long> removedUsernames = new HashMap<>();
+        for (String previousUsername : previousUsernames) {
+            if (!previousUsername.equals(username)) {
+                removedUsernames.put(previousUsername, nextEpoch);
+            }
+        }
+        saveRemovedUsernames(removedUsernames);
+        afterCommit(() -> {
+            epochs.merge(username, nextEpoch, Math::max);
+            for (String previousUsername : previousUsernames) {
+                epochs.merge(previousUsername, nextEpoch, Math::max);
+            }
+        });
+    }
+
+    /**
+     * Publishes the epochs of users whose stored epoch a bulk statement moved one step forward,
+     * once the surrounding transaction commits.
+     *
+     * @param storedEpochs the epoch each user had before the statement, by username
+     */
+    public void revokeTokens(Map<String, Long> storedEpochs) {
+        afterCommit(() -> storedEpochs.forEach((username, storedEpoch) ->
+                epochs.merge(username, (storedEpoch == null ? 0L : storedEpoch) + 1, Math::max)));
+    }
+
+    /**
+     * Revokes the tokens of a user that is about to be deleted and keeps the new epoch of the
+     * username, see {@link #revokeTokens(User, String...)}.
+     */
+    public void revokeTokensOfDeletedUser(User user) {
+        revokeTokens(user);
+        saveRemovedUsernames(Collections.singletonMap(user.getUsername(), user.getTokenEpoch()));
+    }
+
+    /**
+     * Same as {@link #revokeTokens(Map)} for users a bulk statement deletes, whose new epochs
+     * are kept by username.
+     */
+    public void revokeTokensOfDeletedUsers(Map<String, Long> storedEpochs) {
+        Map<String, Long> removedUsernames = new HashMap<>(storedEpochs.size() * 2);
+        storedEpochs.forEach((username, storedEpoch) ->
+                removedUsernames.put(username, Math.max(storedEpoch == null ? 0L : storedEpoch, currentEpoch(username)) + 1));
+        saveRemovedUsernames(removedUsernames);
+        afterCommit(() -> removedUsernames.forEach((username, epoch) -> epochs.merge(username, epoch, Math::max)));
+    }
+
+    // Joins the surrounding transaction, so the usernames are only recorded if the change commits
+    private void saveRemovedUsernames(Map<String, Long> removedUsernames) {
+        if (removedUsernames.isEmpty()) {
+            return;
+        }
+        List<RevokedTokenEpoch> stored = new ArrayList<>(revokedTokenEpochRepository.findAllById(removedUsernames.keySet()));
+        Map<String, Long> epochsToSave = new HashMap<>(removedUsernames);
+        for (RevokedTokenEpoch removedUsername : stored) {
+            removedUsername.setEpoch(Math.max(removedUsername.getEpoch(), epochsToSave.remove(removedUsername.getUsername())));
+        }
+        epochsToSave.forEach((username, epoch) -> stored.add(new RevokedTokenEpoch(username, epoch)));
+        revokedTokenEpochRepository.saveAll(stored);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.supportportal.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.supportportal.domain.User;
+import com.supportportal.enumeration.ExportFormat;
+import com.supportportal.enumeration.Role;
+import com.supportportal.exception.domain.ExportUnavailableException;
+import com.supportportal.exception.domain.UserNotFoundException;
+import com.supportportal.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import static com.supportportal.constant.UserImplConstant.EXPORTS_BUSY;
+import static com.supportportal.constant.UserImplConstant.NO_USER_FOUND_BY_USERNAME;
+
+/**
+ * Streams the user directory straight from a database cursor to the response. Each user is
+ * detached once written, so memory stays flat however many users there are, and the output is
+ * flushed after the first user and then every {@link #FLUSH_EVERY} users so the first bytes
+ * leave right away.
+ * <p>
+ * The cursor keeps a connection for as long as the client takes to download, so at most
+ * {@code user-export.max-concurrent} directory exports run at once and further ones are
+ * refused before they take a connection.
+ */
+@Service
+public class UserExportService {
+
+    private static final int FLUSH_EVERY = 256;
+    private static final String CSV_HEADER = "userId,firstName,lastName,username,email,role,active,notLocked,joinDate,lastLoginDate";
+
+    private final UserRepository userRepository;
+
+    // Flushes are left to the export loop, the writer would otherwise flush after every user
+    private final ObjectWriter userWriter;
+
+    private final ActingUser actingUser;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Semaphore exports;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserExportService(UserRepository userRepository, ObjectMapper objectMapper, ActingUser actingUser,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${user-export.max-concurrent:2}") int maxConcurrentExports) {
+        // The password hash and the derived authorities never leave through an export
+        this.userWriter = objectMapper.copy().addMixIn(User.class, ExportedUser.class)
+                .writerFor(User.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.userRepository = userRepository;
+        this.actingUser = actingUser;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.exports = new Semaphore(maxConcurrentExports);
+    }
+
+    /**
+     * Writes every user visible to the acting user; users with {@link Role#ROLE_USER} only see
+     * themselves.
+     */
+    public void exportUsers(ExportFormat format, OutputStream outputStream) throws IOException, UserNotFoundException {
+        Role currentUserRole = actingUser.getRole();
+        if (currentUserRole == null) {
+            throw new UserNotFoundException(NO_USER_FOUND_BY_USERNAME + actingUser.getUsername());
+        }
+        if (currentUserRole == Role.ROLE_USER) {
+            write(Stream.of(actingUser.getUser()), format, outputStream);
+            return;
+        }
+        if (!exports.tryAcquire()) {
+            throw new ExportUnavailableException(EXPORTS_BUSY);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<User> users = userRepository.streamAllByOrderById()) {
+                    write(users, format, outputStream);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            exports.release();
+        }
+    }
+
+    private void write(Stream<User> users, ExportFormat format, OutputStream outputStream) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsv(users.iterator(), outputStream);
+        } else {
+            writeNdjson(users.iterator(), outputStream);
+        }
+    }
+
+    private void writeNdjson(Iterator<User> users, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = userWriter.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        int written = 0;
+        while (users.hasNext()) {
+            User user = users.next();
+            userWriter.writeValue(generator, user);
+            generator.writeRaw('\n');
+            entityManager.detach(user);
+            if (++written % FLUSH_EVERY == 1) {
+                generator.flush();
+            }
+        }
+        generator.flush();
+    }
+
+    private void writeCsv(Iterator<User> users, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        writer.flush();
+        int written = 0;
+        while (users.hasNext()) {
+            User user = users.next();
+            writer.write(csv(user.getUserId()) + ',' + csv(user.getFirstName()) + ',' + csv(user.getLastName()) + ','
+                    + csv(user.getUsername()) + ',' + csv(user.getEmail()) + ',' + csv(user.getRole()) + ','
+                    + user.isActive() + ',' + user.isNotLocked() + ',' + csv(user.getJoinDate()) + ',' + csv(user.getLastLoginDate()));
+            writer.write("\r\n");
+            entityManager.detach(user);
+            if (++written % FLUSH_EVERY == 1) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+    }
+
+    private static String csv(Date date) {
+        return date == null ? "" : date.toInstant().toString();
+    }
+
+    // Quotes fields containing separators, and neutralizes leading characters spreadsheets
+    // would evaluate as a formula.
+    private static String csv(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String field = "=+-@\t\r".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+        if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+            return '"' + field.replace("\"", "\"\"") + '"';
+        }
+        return field;
+    }
+
+    @JsonIgnoreProperties({"password", "authorities", "tokenEpoch"})
+    private abstract static class ExportedUser {
+    }
+}
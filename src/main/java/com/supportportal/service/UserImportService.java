@@ -0,0 +1,444 @@
+package com.supportportal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.supportportal.domain.User;
+import com.supportportal.domain.UserIdentity;
+import com.supportportal.domain.UserImportReport;
+import com.supportportal.domain.UserImportResult;
+import com.supportportal.domain.UserImportRow;
+import com.supportportal.enumeration.ExportFormat;
+import com.supportportal.enumeration.ImportStatus;
+import com.supportportal.enumeration.Role;
+import com.supportportal.exception.domain.UserNotFoundException;
+import com.supportportal.repository.UserRepository;
+import com.supportportal.utility.CsvRecordReader;
+import com.supportportal.utility.UserIdGenerator;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.supportportal.constant.FileConstant.DEFAULT_USER_IMAGE_PATH;
+import static com.supportportal.constant.UserImplConstant.*;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Creates users from a CSV or NDJSON file, read as a stream and imported in chunks. Each
+ * chunk is checked against the existing users with one query, its passwords are hashed in
+ * parallel, and it is inserted in JDBC batches within its own transaction, so a failure only
+ * ever affects the rows of one chunk. Only one chunk of rows and users is held at a time; the
+ * report still grows by one small result per row of the file.
+ * <p>
+ * Hashing runs on a pool of its own, by default half the cores, so an import never takes the
+ * threads of the login hashing pool or of the common fork-join pool. When the pool queue is
+ * full the importing request hashes the slice itself, so concurrent imports slow each other
+ * down instead of queueing without bound.
+ * <p>
+ * Imported users get a random password that is never disclosed; they choose their own through
+ * a password reset. That is why the minimum BCrypt cost is enough here.
+ */
+@Service
+public class UserImportService {
+
+    private static final String[] REQUIRED_FIELDS = {"firstName", "lastName", "username", "email"};
+    private static final String USER_NOT_SAVED = "User could not be saved";
+
+    private final Logger LOGGER = LoggerFactory.getLogger(getClass());
+
+    private final UserRepository userRepository;
+
+    private final UserPermissionService userPermissionService;
+
+    private final TokenEpochService tokenEpochService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final UserIdGenerator userIdGenerator;
+
+    private final int chunkSize;
+
+    private final ThreadPoolExecutor hashingExecutor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserImportService(UserRepository userRepository,
+                             UserPermissionService userPermissionService,
+                             TokenEpochService tokenEpochService,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             UserIdGenerator userIdGenerator,
+                             @Value("${password-hashing.bcrypt.min-strength:10}") int minStrength,
+                             @Value("${user-import.chunk-size:500}") int chunkSize,
+                             @Value("${user-import.hashing-threads:0}") int hashingThreads,
+                             @Value("${user-import.hashing-queue-capacity:64}") int hashingQueueCapacity) {
+        this.userRepository = userRepository;
+        this.userPermissionService = userPermissionService;
+        this.tokenEpochService = tokenEpochService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.userIdGenerator = userIdGenerator;
+        this.passwordEncoder = new BCryptPasswordEncoder(minStrength);
+        this.chunkSize = chunkSize;
+        int threads = hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashingExecutor = new ThreadPoolExecutor(threads, threads, 0L, MILLISECONDS, new ArrayBlockingQueue<>(hashingQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hashing-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdown();
+    }
+
+    /**
+     * Imports every row of the file. Rows that are invalid, use a taken username or email, or
+     * ask for a role the acting user may not create are reported as failed; the others are
+     * created.
+     */
+    public UserImportReport importUsers(ExportFormat format, InputStream inputStream) throws IOException, UserNotFoundException {
+        userPermissionService.getActingUserRole();
+        // Worker threads have no request bound to them, so the URL is resolved here
+        String profileImageBaseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().path(DEFAULT_USER_IMAGE_PATH).toUriString();
+        Map<Role, String> permissionErrors = new EnumMap<>(Role.class);
+        UserImportReport report = new UserImportReport();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        RowReader rows = format == ExportFormat.CSV ? new CsvRowReader(reader) : new NdjsonRowReader(reader);
+        List<UserImportRow> chunk = new ArrayList<>(chunkSize);
+        UserImportRow row;
+        while ((row = rows.next()) != null) {
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, permissionErrors, profileImageBaseUrl, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, permissionErrors, profileImageBaseUrl, report);
+        }
+        LOGGER.info("Imported {} users, {} rows failed", report.getCreated(), report.getFailed());
+        return report;
+    }
+
+    private void importChunk(List<UserImportRow> rows, Map<Role, String> permissionErrors, String profileImageBaseUrl, UserImportReport report) {
+        Map<UserImportRow, String> failures = new IdentityHashMap<>();
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        List<UserImportRow> candidates = new ArrayList<>();
+        for (UserImportRow row : rows) {
+            String error = validate(row, permissionErrors);
+            if (error == null && usernames.contains(row.getUsername())) {
+                error = USERNAME_ALREADY_EXISTS;
+            } else if (error == null && emails.contains(row.getEmail())) {
+                error = EMAIL_ALREADY_EXISTS;
+            }
+            if (error != null) {
+                failures.put(row, error);
+            } else {
+                usernames.add(row.getUsername());
+                emails.add(row.getEmail());
+                candidates.add(row);
+            }
+        }
+        if (!candidates.isEmpty()) {
+            Set<String> takenUsernames = new HashSet<>();
+            Set<String> takenEmails = new HashSet<>();
+            for (UserIdentity taken : userRepository.findByUsernameInOrEmailIn(usernames, emails)) {
+                takenUsernames.add(taken.getUsername());
+                takenEmails.add(taken.getEmail());
+            }
+            candidates.removeIf(row -> {
+                String error = takenUsernames.contains(row.getUsername()) ? USERNAME_ALREADY_EXISTS
+                        : takenEmails.contains(row.getEmail()) ? EMAIL_ALREADY_EXISTS : null;
+                if (error != null) {
+                    failures.put(row, error);
+                }
+                return error != null;
+            });
+        }
+        List<User> users = newUsers(candidates, profileImageBaseUrl);
+        failures.putAll(save(candidates, users));
+        for (UserImportRow row : rows) {
+            String error = failures.get(row);
+            report.add(new UserImportResult(row.getRow(), row.getUsername(),
+                    error == null ? ImportStatus.CREATED : ImportStatus.FAILED, error));
+        }
+    }
+
+    private Map<UserImportRow, String> save(List<UserImportRow> rows, List<User> users) {
+        Map<UserImportRow, String> failures = new IdentityHashMap<>();
+        if (users.isEmpty()) {
+            return failures;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(users));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request took a username or email since the check, find out which row
+            for (int index = 0; index < users.size(); index++) {
+                User user = users.get(index);
+                user.setId(null);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persist(Collections.singletonList(user)));
+                } catch (DataIntegrityViolationException rowException) {
+                    failures.put(rows.get(index), duplicateMessage(rowException));
+                }
+            }
+        }
+        return failures;
+    }
+
+    private void persist(List<User> users) {
+        userRepository.saveAll(users);
+        userRepository.flush();
+        entityManager.clear();
+    }
+
+    private String validate(UserImportRow row, Map<Role, String> permissionErrors) {
+        if (row.getError() != null) {
+            return row.getError();
+        }
+        row.setFirstName(StringUtils.trimToNull(row.getFirstName()));
+        row.setLastName(StringUtils.trimToNull(row.getLastName()));
+        row.setUsername(StringUtils.trimToNull(row.getUsername()));
+        row.setEmail(StringUtils.trimToNull(row.getEmail()));
+        String[] values = {row.getFirstName(), row.getLastName(), row.getUsername(), row.getEmail()};
+        for (int field = 0; field < REQUIRED_FIELDS.length; field++) {
+            if (values[field] == null) {
+                return MISSING_IMPORT_FIELD + REQUIRED_FIELDS[field];
+            }
+        }
+        Role role;
+        try {
+            role = Role.valueOf(StringUtils.defaultIfBlank(row.getRole(), Role.ROLE_USER.name()).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN_ROLE + row.getRole();
+        }
+        row.setRole(role.name());
+        // The rules only depend on the role, so they are evaluated once per role and import
+        if (!permissionErrors.containsKey(role)) {
+            permissionErrors.put(role, permissionError(role));
+        }
+        return permissionErrors.get(role);
+    }
+
+    private String permissionError(Role role) {
+        try {
+            userPermissionService.validateCreatePermission(role);
+            return null;
+        } catch (UserNotFoundException e) {
+            return e.getMessage();
+        }
+    }
+
+    // Hashing is by far the most expensive step, the rows are split into one slice per thread
+    private List<User> newUsers(List<UserImportRow> rows, String profileImageBaseUrl) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int threads = hashingExecutor.getMaximumPoolSize();
+        List<Future<List<User>>> slices = new ArrayList<>(threads);
+        for (List<UserImportRow> slice : Lists.partition(rows, (rows.size() + threads - 1) / threads)) {
+            slices.add(hashingExecutor.submit(() -> {
+                List<User> users = new ArrayList<>(slice.size());
+                for (UserImportRow row : slice) {
+                    users.add(newUser(row, profileImageBaseUrl));
+                }
+                return users;
+            }));
+        }
+        List<User> users = new ArrayList<>(rows.size());
+        try {
+            for (Future<List<User>> slice : slices) {
+                users.addAll(slice.get());
+            }
+        } catch (InterruptedException e) {
+            slices.forEach(slice -> slice.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing imported passwords", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return users;
+    }
+
+    private User newUser(UserImportRow row, String profileImageBaseUrl) {
+        Role role = Role.valueOf(row.getRole());
+        User user = new User();
+        user.setUserId(userIdGenerator.generateUserId());
+        user.setFirstName(row.getFirstName());
+        user.setLastName(row.getLastName());
+        user.setUsername(row.getUsername());
+        user.setEmail(row.getEmail());
+        user.setJoinDate(new Date());
+        user.setPassword(passwordEncoder.encode(RandomStringUtils.randomAlphanumeric(10)));
+        user.setActive(!Boolean.FALSE.equals(row.getActive()));
+        user.setNotLocked(!Boolean.FALSE.equals(row.getNotLocked()));
+        user.setTokenEpoch(tokenEpochService.currentEpoch(row.getUsername()));
+        user.setRole(role.name());
+        user.setAuthorities(role.getAuthorities());
+        user.setProfileImageUrl(profileImageBaseUrl + row.getUsername());
+        return user;
+    }
+
+    private static String duplicateMessage(DataIntegrityViolationException exception) {
+        Throwable cause = exception.getCause();
+        String constraint = null;
+        if (cause instanceof ConstraintViolationException) {
+            constraint = ((ConstraintViolationException) cause).getConstraintName();
+        }
+        if (constraint == null) {
+            constraint = exception.getMostSpecificCause().getMessage();
+        }
+        constraint = StringUtils.defaultString(constraint).toLowerCase();
+        if (constraint.contains(USERNAME_UNIQUE_CONSTRAINT)) {
+            return USERNAME_ALREADY_EXISTS;
+        }
+        if (constraint.contains(EMAIL_UNIQUE_CONSTRAINT)) {
+            return EMAIL_ALREADY_EXISTS;
+        }
+        return USER_NOT_SAVED;
+    }
+
+    private interface RowReader {
+        // Next row of the file, or null at its end
+        UserImportRow next() throws IOException;
+    }
+
+    private class NdjsonRowReader implements RowReader {
+        private final BufferedReader reader;
+        private int row;
+
+        NdjsonRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public UserImportRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (StringUtils.isBlank(line));
+            UserImportRow importRow;
+            try {
+                importRow = objectMapper.readValue(line, UserImportRow.class);
+            } catch (JsonProcessingException e) {
+                importRow = new UserImportRow();
+                importRow.setError(MALFORMED_IMPORT_ROW + e.getOriginalMessage());
+            }
+            importRow.setRow(++row);
+            return importRow;
+        }
+    }
+
+    private static class CsvRowReader implements RowReader {
+        private final CsvRecordReader reader;
+        private Map<String, Integer> columns;
+        private int row;
+
+        CsvRowReader(BufferedReader reader) {
+            this.reader = new CsvRecordReader(reader);
+        }
+
+        @Override
+        public UserImportRow next() throws IOException {
+            if (columns == null) {
+                List<String> header = reader.next();
+                if (header == null) {
+                    return null;
+                }
+                columns = new HashMap<>();
+                for (int column = 0; column < header.size(); column++) {
+                    columns.put(header.get(column).trim().toLowerCase(), column);
+                }
+            }
+            List<String> fields = reader.next();
+            if (fields == null) {
+                return null;
+            }
+            UserImportRow importRow = new UserImportRow();
+            importRow.setRow(++row);
+            importRow.setFirstName(field(fields, "firstname"));
+            importRow.setLastName(field(fields, "lastname"));
+            importRow.setUsername(field(fields, "username"));
+            importRow.setEmail(field(fields, "email"));
+            importRow.setRole(field(fields, "role"));
+            try {
+                importRow.setActive(flag(field(fields, "active")));
+                importRow.setNotLocked(flag(field(fields, "notlocked")));
+            } catch (IllegalArgumentException e) {
+                importRow.setError(MALFORMED_IMPORT_ROW + e.getMessage());
+            }
+            return importRow;
+        }
+
+        private String field(List<String> fields, String name) {
+            Integer column = columns.get(name);
+            if (column == null || column >= fields.size()) {
+                return null;
+            }
+            // Undo the quote the export puts in front of values a spreadsheet would evaluate
+            String value = fields.get(column);
+            return value.length() > 1 && value.charAt(0) == '\'' && "=+-@\t\r".indexOf(value.charAt(1)) >= 0
+                    ? value.substring(1) : value;
+        }
+
+        private static Boolean flag(String value) {
+            if (StringUtils.isBlank(value)) {
+                return null;
+            }
+            if ("true".equalsIgnoreCase(value.trim()) || "false".equalsIgnoreCase(value.trim())) {
+                return Boolean.valueOf(value.trim());
+            }
+            throw new IllegalArgumentException("expected true or false, got " + value);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.supportportal.service;
+
+import com.supportportal.enumeration.Permission;
+import com.supportportal.enumeration.Role;
+import com.supportportal.exception.domain.UserNotFoundException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Role rules for creating and updating users on behalf of the acting user. The rules only
+ * depend on the acting role and the target role, so bulk operations can evaluate them once
+ * per role instead of once per user.
+ */
+@Service
+public class UserPermissionService {
+
+    private final ActingUser actingUser;
+
+    public UserPermissionService(ActingUser actingUser) {
+        this.actingUser = actingUser;
+    }
+
+    // Resolved once per request from the stored user, never from the token claim: every rule
+    // here guards a change
+    public Role getActingUserRole() throws UserNotFoundException {
+        if (actingUser.getUsername() == null) {
+            throw new UserNotFoundException("Unable to determine current user");
+        }
+        Role currentUserRole = actingUser.getStoredRole();
+        if (currentUserRole == null) {
+            throw new UserNotFoundException("Current user not found");
+        }
+        return currentUserRole;
+    }
+
+    public void validateCreatePermission(Role newUserRole) throws UserNotFoundException {
+        Role currentUserRole = getActingUserRole();
+
+        // Check if current user has create permission
+        if (!currentUserRole.hasPermission(Permission.USER_CREATE)) {
+            throw new UserNotFoundException("Insufficient privileges to create users");
+        }
+
+        // ADMIN cannot create SUPER_ADMIN users
+        if (currentUserRole == Role.ROLE_ADMIN && newUserRole == Role.ROLE_SUPER_ADMIN) {
+            throw new UserNotFoundException("ADMIN users cannot create SUPER_ADMIN users");
+        }
+
+        // Users cannot create users with higher roles than themselves (except SUPER_ADMIN)
+        if (currentUserRole != Role.ROLE_SUPER_ADMIN && newUserRole.getLevel() > currentUserRole.getLevel()) {
+            throw new UserNotFoundException("Cannot create users with higher role than yourself. Your role: " +
+                currentUserRole + ", Requested role: " + newUserRole);
+        }
+    }
+
+    public void validateUpdatePermission(String targetUsername, Role newRole) throws UserNotFoundException {
+        Role currentUserRole = getActingUserRole();
+        if (!actingUser.getUsername().equals(targetUsername)) {
+            validateUpdatePermission(newRole);
+            return;
+        }
+
+        // Check if current user has update permission
+        if (!currentUserRole.hasPermission(Permission.USER_UPDATE)) {
+            throw new UserNotFoundException("Insufficient privileges to update users");
+        }
+
+        // User updating themselves - cannot escalate privileges
+        if (newRole.getLevel() > currentUserRole.getLevel()) {
+            throw new UserNotFoundException("Users cannot escalate their own privileges. Current role: " +
+                currentUserRole + ", Requested role: " + newRole);
+        }
+    }
+
+    /**
+     * Rules for changing a user other than the acting one, when the user ends up with the
+     * given role.
+     */
+    public void validateUpdatePermission(Role newRole) throws UserNotFoundException {
+        Role currentUserRole = getActingUserRole();
+
+        // Check if current user has update permission
+        if (!currentUserRole.hasPermission(Permission.USER_UPDATE)) {
+            throw new UserNotFoundException("Insufficient privileges to update users");
+        }
+
+        // Only ADMIN and SUPER_ADMIN can update other users
+        if (currentUserRole.getLevel() < Role.ROLE_ADMIN.getLevel()) {
+            throw new UserNotFoundException("Only ADMIN and SUPER_ADMIN can update other users");
+        }
+
+        // ADMIN cannot promote users to SUPER_ADMIN
+        if (currentUserRole == Role.ROLE_ADMIN && newRole == Role.ROLE_SUPER_ADMIN) {
+            throw new UserNotFoundException("ADMIN users cannot promote users to SUPER_ADMIN");
+        }
+
+        // Cannot assign roles higher than current user's role (except SUPER_ADMIN)
+        if (currentUserRole != Role.ROLE_SUPER_ADMIN && newRole.getLevel() > currentUserRole.getLevel()) {
+            throw new UserNotFoundException("Cannot assign roles higher than your own. Your role: " +
+                currentUserRole + ", Requested role: " + newRole);
+        }
+    }
+}
@@ -1,33 +1,66 @@
 package com.supportportal.service;
 
+import com.supportportal.domain.BulkUserRequest;
 import com.supportportal.domain.User;
+import com.supportportal.domain.UserPage;
+import com.supportportal.domain.UserPrincipal;
+import com.supportportal.enumeration.UserField;
 import com.supportportal.exception.domain.EmailExistException;
 import com.supportportal.exception.domain.EmailNotFoundException;
+import com.supportportal.exception.domain.InvalidBulkRequestException;
+import com.supportportal.exception.domain.InvalidPageRequestException;
+import com.supportportal.exception.domain.NotAnImageFileException;
 import com.supportportal.exception.domain.UserNotFoundException;
 import com.supportportal.exception.domain.UsernameExistException;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.mail.MessagingException;
 import java.io.IOException;
-import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface UserService {
 
     User register(String firstName, String lastName, String username, String email) throws UserNotFoundException, UsernameExistException, EmailExistException, MessagingException;
 
-    List<User> getUsers();
+    /**
+     * One page of the users visible to the current user, sorted by the comma separated
+     * attributes in {@code sort} ('-' prefix for descending) and starting after {@code cursor}.
+     * Only the given fields are selected.
+     */
+    UserPage getUsers(int size, String sort, String cursor, boolean includeTotal, Set<UserField> fields) throws InvalidPageRequestException;
 
     User findUserByUsername(String username);
 
+    /**
+     * The user as currently stored, served from the principal cache when possible, or null if
+     * there is no such user.
+     */
+    UserPrincipal findUserPrincipal(String username);
+
+    Map<String, Object> findUserFields(String username, Set<UserField> fields);
+
     User findUserByEmail(String email);
 
-    User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException;
+    User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException;
 
-    User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException;
+    User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException;
 
     void deleteUser(String username) throws UserNotFoundException;
 
     void resetPassword(String email) throws EmailNotFoundException;
 
-    User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException;
+    /**
+     * Applies the action to every selected user whose state it changes, other than the acting
+     * user, and returns how many were changed.
+     */
+    int updateUsers(BulkUserRequest request) throws UserNotFoundException, InvalidBulkRequestException;
+
+    /**
+     * Deletes every selected user other than the acting user and the super admin, and returns
+     * how many were deleted.
+     */
+    int deleteUsers(BulkUserRequest request) throws UserNotFoundException, InvalidBulkRequestException;
+
+    User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException;
 }
@@ -0,0 +1,151 @@
+package com.supportportal.service.impl;
+
+import com.supportportal.service.LoginAttemptStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts failed logins per username over a sliding 15 minute window, in the memory of this
+ * instance.
+ * <p>
+ * The window of each username is a single {@code long} updated with compare-and-set: the
+ * upper 24 bits hold the index of the newest time slot, the lower 40 bits eight 5-bit
+ * counters, one per slot of 1/8 of the window. Moving the window forward is a shift of the
+ * counters, so increments never lose updates and never take a lock. Counters saturate at 31,
+ * far above the lockout threshold.
+ * <p>
+ * The number of tracked usernames is capped. When the cap is reached, usernames with the
+ * fewest recent failures are dropped first, so spraying many usernames once each cannot push
+ * out the counters of an account that is actually being brute-forced.
+ */
+@Component
+@ConditionalOnProperty(name = "login-attempt.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+    // Usernames with this many failures or more are never trimmed, they are the ones being locked out
+    private static final int TRIMMED_ATTEMPTS_LIMIT = 5;
+
+    private static final int SLOTS = 8;
+    private static final int BITS_PER_SLOT = 5;
+    private static final long SLOT_MASK = (1L << BITS_PER_SLOT) - 1;
+    private static final int COUNTER_BITS = SLOTS * BITS_PER_SLOT;
+    private static final long COUNTERS_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long SLOT_INDEX_MASK = (1L << (Long.SIZE - COUNTER_BITS)) - 1;
+    private static final long SLOT_MILLIS = ATTEMPT_WINDOW_MILLIS / SLOTS;
+
+    private final Map<String, AtomicLong> loginAttempts = new ConcurrentHashMap<>();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+    private final int maximumTrackedUsernames;
+    private final Clock clock;
+
+    @Autowired
+    public InMemoryLoginAttemptStore(@Value("${login-attempt.maximum-tracked-usernames:1000000}") int maximumTrackedUsernames) {
+        this(maximumTrackedUsernames, Clock.systemUTC());
+    }
+
+    InMemoryLoginAttemptStore(int maximumTrackedUsernames, Clock clock) {
+        this.maximumTrackedUsernames = maximumTrackedUsernames;
+        this.clock = clock;
+    }
+
+    @Override
+    public void reset(String username) {
+        loginAttempts.remove(username);
+    }
+
+    @Override
+    public void recordFailure(String username) {
+        long slot = currentSlot();
+        AtomicLong window = loginAttempts.get(username);
+        if (window == null) {
+            if (loginAttempts.size() >= maximumTrackedUsernames) {
+                trimToCapacity();
+            }
+            window = loginAttempts.computeIfAbsent(username, key -> new AtomicLong(slot << COUNTER_BITS));
+        }
+        long current;
+        long next;
+        do {
+            current = window.get();
+            next = advance(current, slot);
+            if ((next & SLOT_MASK) < SLOT_MASK) {
+                next++;
+            }
+        } while (!window.compareAndSet(current, next));
+    }
+
+    @Override
+    public int getAttempts(String username) {
+        AtomicLong window = loginAttempts.get(username);
+        return window == null ? 0 : count(advance(window.get(), currentSlot()));
+    }
+
+    int getTrackedUsernames() {
+        return loginAttempts.size();
+    }
+
+    /**
+     * Drops the usernames whose failures have all slid out of the window.
+     */
+    @Scheduled(fixedDelayString = "${login-attempt.sweep-interval-ms:60000}")
+    public void evictExpiredAttempts() {
+        removeAttemptsUpTo(0);
+    }
+
+    private void trimToCapacity() {
+        if (!trimming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (int attempts = 0; attempts < TRIMMED_ATTEMPTS_LIMIT && loginAttempts.size() >= maximumTrackedUsernames; attempts++) {
+                removeAttemptsUpTo(attempts);
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    private void removeAttemptsUpTo(int attempts) {
+        long slot = currentSlot();
+        Iterator<AtomicLong> windows = loginAttempts.values().iterator();
+        while (windows.hasNext()) {
+            if (count(advance(windows.next().get(), slot)) <= attempts) {
+                windows.remove();
+            }
+        }
+    }
+
+    private long currentSlot() {
+        return (clock.millis() / SLOT_MILLIS) & SLOT_INDEX_MASK;
+    }
+
+    // Shifts the counters so that the lowest one belongs to the given slot, dropping the slots
+    // that left the window. A slot older than the stored one (a racing thread read the clock
+    // earlier) is treated as the stored one.
+    private static long advance(long window, long slot) {
+        long storedSlot = window >>> COUNTER_BITS;
+        long elapsed = (slot - storedSlot) & SLOT_INDEX_MASK;
+        if (elapsed > SLOT_INDEX_MASK >>> 1) {
+            return window;
+        }
+        long counters = elapsed >= SLOTS ? 0 : (window << (elapsed * BITS_PER_SLOT)) & COUNTERS_MASK;
+        return (slot << COUNTER_BITS) | counters;
+    }
+
+    private static int count(long window) {
+        int count = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            count += (int) ((window >>> (slot * BITS_PER_SLOT)) & SLOT_MASK);
+        }
+        return count;
+    }
+}
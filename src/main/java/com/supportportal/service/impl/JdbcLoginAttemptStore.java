@@ -0,0 +1,147 @@
+package com.supportportal.service.impl;
+
+import com.supportportal.service.LoginAttemptStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counts failed logins in the shared database, so every instance behind the load balancer
+ * sees the failures of the others.
+ * <p>
+ * Failures are first added to a local map and flushed periodically as one batch of inserts
+ * into {@code login_attempt}, one row per username, instance and time bucket. Reads add the
+ * failures not flushed yet to the rows of the window, so this instance never undercounts its
+ * own failures: they stay pending until the insert is done, so a read racing with a flush may
+ * count them twice but never misses them. Resets are written right away, and never while a
+ * flush runs, so a flush cannot insert failures that a successful login has just cleared.
+ * <p>
+ * The number of usernames with pending failures is capped, for when the database stays
+ * unreachable. Usernames with a single pending failure are dropped first; once none is left,
+ * failures of new usernames are dropped until a flush succeeds.
+ */
+@Component
+@ConditionalOnProperty(name = "login-attempt.store", havingValue = "jdbc")
+public class JdbcLoginAttemptStore implements LoginAttemptStore {
+
+    private static final long BUCKET_MILLIS = ATTEMPT_WINDOW_MILLIS / 8;
+
+    private static final String COUNT_ATTEMPTS =
+            "select coalesce(sum(attempts), 0) from login_attempt where username = ? and bucket_start > ?";
+    private static final String INSERT_ATTEMPTS =
+            "insert into login_attempt (username, bucket_start, attempts) values (?, ?, ?)";
+    private static final String DELETE_ATTEMPTS = "delete from login_attempt where username = ?";
+    private static final String DELETE_EXPIRED_ATTEMPTS = "delete from login_attempt where bucket_start <= ?";
+
+    private final Logger LOGGER = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, Integer> pendingAttempts = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Clock clock;
+
+    private final int maximumPendingUsernames;
+
+    @Autowired
+    public JdbcLoginAttemptStore(JdbcTemplate jdbcTemplate,
+                                 @Value("${login-attempt.jdbc.maximum-pending-usernames:100000}") int maximumPendingUsernames) {
+        this(jdbcTemplate, Clock.systemUTC(), maximumPendingUsernames);
+    }
+
+    JdbcLoginAttemptStore(JdbcTemplate jdbcTemplate, Clock clock, int maximumPendingUsernames) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+        this.maximumPendingUsernames = maximumPendingUsernames;
+    }
+
+    @Override
+    public void recordFailure(String username) {
+        if (pendingAttempts.size() >= maximumPendingUsernames && !pendingAttempts.containsKey(username) && !trimPendingAttempts()) {
+            return;
+        }
+        pendingAttempts.merge(username, 1, Integer::sum);
+    }
+
+    int getPendingUsernames() {
+        return pendingAttempts.size();
+    }
+
+    @Override
+    public int getAttempts(String username) {
+        Integer stored = jdbcTemplate.queryForObject(COUNT_ATTEMPTS, Integer.class, username, windowStart());
+        return stored + pendingAttempts.getOrDefault(username, 0);
+    }
+
+    @Override
+    public synchronized void reset(String username) {
+        pendingAttempts.remove(username);
+        jdbcTemplate.update(DELETE_ATTEMPTS, username);
+    }
+
+    @Scheduled(fixedDelayString = "${login-attempt.jdbc.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (pendingAttempts.isEmpty()) {
+            return;
+        }
+        long bucketStart = clock.millis() / BUCKET_MILLIS * BUCKET_MILLIS;
+        List<Object[]> batch = new ArrayList<>(pendingAttempts.size());
+        pendingAttempts.forEach((username, attempts) -> batch.add(new Object[]{username, bucketStart, attempts}));
+        try {
+            jdbcTemplate.batchUpdate(INSERT_ATTEMPTS, batch);
+            LOGGER.debug("Flushed failed login attempts of {} usernames", batch.size());
+        } catch (DataAccessException e) {
+            LOGGER.error("Could not flush failed login attempts of {} usernames, retrying on next flush: {}", batch.size(), e.getMessage());
+            return;
+        }
+        // Only the flushed failures leave the map, the ones recorded meanwhile stay pending
+        for (Object[] attempts : batch) {
+            int flushed = (Integer) attempts[2];
+            pendingAttempts.computeIfPresent((String) attempts[0], (username, pending) -> pending > flushed ? pending - flushed : null);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${login-attempt.sweep-interval-ms:60000}")
+    public void evictExpiredAttempts() {
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED_ATTEMPTS, windowStart());
+        LOGGER.debug("Deleted {} expired login attempt rows", deleted);
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    // Returns whether there is room for another username
+    private boolean trimPendingAttempts() {
+        if (!trimming.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            pendingAttempts.values().removeIf(attempts -> attempts == 1);
+            return pendingAttempts.size() < maximumPendingUsernames;
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    private long windowStart() {
+        return clock.millis() - ATTEMPT_WINDOW_MILLIS;
+    }
+}
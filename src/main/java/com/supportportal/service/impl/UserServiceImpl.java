@@ -1,27 +1,48 @@
 package com.supportportal.service.impl;
 
+import com.google.common.collect.Lists;
+import com.supportportal.domain.BulkUserRequest;
+import com.supportportal.domain.BulkUserTarget;
 import com.supportportal.domain.User;
+import com.supportportal.domain.UserIdentity;
+import com.supportportal.domain.UserPage;
 import com.supportportal.domain.UserPrincipal;
+import com.supportportal.domain.UserSortOrder;
+import com.supportportal.enumeration.BulkAction;
 import com.supportportal.enumeration.Role;
+import com.supportportal.enumeration.UserField;
 import com.supportportal.exception.domain.EmailExistException;
 import com.supportportal.exception.domain.EmailNotFoundException;
+import com.supportportal.exception.domain.InvalidBulkRequestException;
+import com.supportportal.exception.domain.InvalidPageRequestException;
+import com.supportportal.exception.domain.NotAnImageFileException;
 import com.supportportal.exception.domain.UserNotFoundException;
 import com.supportportal.exception.domain.UsernameExistException;
 import com.supportportal.repository.UserRepository;
+import com.supportportal.service.ActingUser;
 import com.supportportal.service.EmailService;
+import com.supportportal.service.LastLoginService;
 import com.supportportal.service.LoginAttemptService;
+import com.supportportal.service.ProfileImageService;
+import com.supportportal.service.TokenEpochService;
+import com.supportportal.service.UserPermissionService;
 import com.supportportal.service.UserService;
+import com.supportportal.utility.KeysetCursor;
+import com.supportportal.utility.UserIdGenerator;
+import com.supportportal.utility.UserPrincipalCache;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -33,66 +54,128 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import javax.mail.MessagingException;
 import javax.transaction.Transactional;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 import static com.supportportal.constant.FileConstant.*;
 import static com.supportportal.constant.UserImplConstant.*;
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 @Service
 @Transactional
 @Qualifier("userDetailsService")
-public class UserServiceImpl implements UserService, UserDetailsService {
+public class UserServiceImpl implements UserService, UserDetailsService, UserDetailsPasswordService {
 
     private Logger LOGGER = LoggerFactory.getLogger(getClass());
 
     private UserRepository userRepository;
 
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordEncoder passwordEncoder;
 
     private LoginAttemptService loginAttemptService;
 
     private EmailService emailService;
 
+    private TokenEpochService tokenEpochService;
+
+    private LastLoginService lastLoginService;
+
+    private UserPrincipalCache userPrincipalCache;
+
+    private ActingUser actingUser;
+
+    private UserPermissionService userPermissionService;
+
+    private UserIdGenerator userIdGenerator;
+
+    private ProfileImageService profileImageService;
+
     @Autowired
     public UserServiceImpl(
             UserRepository userRepository,
-            BCryptPasswordEncoder passwordEncoder,
+            PasswordEncoder passwordEncoder,
             LoginAttemptService loginAttemptService,
-            EmailService emailService
+            EmailService emailService,
+            TokenEpochService tokenEpochService,
+            LastLoginService lastLoginService,
+            UserPrincipalCache userPrincipalCache,
+            ActingUser actingUser,
+            UserPermissionService userPermissionService,
+            UserIdGenerator userIdGenerator,
+            ProfileImageService profileImageService
             ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.loginAttemptService = loginAttemptService;
         this.emailService = emailService;
+        this.tokenEpochService = tokenEpochService;
+        this.lastLoginService = lastLoginService;
+        this.userPrincipalCache = userPrincipalCache;
+        this.actingUser = actingUser;
+        this.userPermissionService = userPermissionService;
+        this.userIdGenerator = userIdGenerator;
+        this.profileImageService = profileImageService;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+        User user = findPrincipalUser(username);
         if(user == null){
             LOGGER.error(NO_USER_FOUND_BY_USERNAME + username);
             throw new UsernameNotFoundException(NO_USER_FOUND_BY_USERNAME + username);
         }else{
             validateLoginAttempt(user);
-            user.setLLastLoginDateDisplay(user.getLastLoginDate());
-            user.setLastLoginDate(new Date());
-            userRepository.save(user);
+            lastLoginService.recordLogin(user);
             UserPrincipal userPrincipal = new UserPrincipal(user);
+            // Cached with the new login dates, so the next login shifts them correctly
+            userPrincipalCache.putUserInCache(userPrincipal);
             LOGGER.info(FOUND_USER_BY_USERNAME + username);
             return userPrincipal;
         }
     }
 
+    /**
+     * Copy of the user from the principal cache, loaded on a miss. The login dates set on it
+     * never trigger a full-row UPDATE at commit; they are written in batches by
+     * LastLoginService instead.
+     */
+    private User findPrincipalUser(String username) {
+        UserPrincipal userPrincipal = findUserPrincipal(username);
+        return userPrincipal == null ? null : userPrincipal.getUser();
+    }
+
+    @Override
+    public UserPrincipal findUserPrincipal(String username) {
+        return userPrincipalCache.getOrLoad(username, userRepository::findUserByUsername);
+    }
+
+    /**
+     * Stores a re-hashed password after a successful login, called by Spring Security when the
+     * stored hash was made with a lower BCrypt cost than the calibrated one.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        userRepository.updatePassword(userDetails.getUsername(), newPassword);
+        userPrincipalCache.removeUserFromCache(userDetails.getUsername());
+        if (userDetails instanceof UserPrincipal) {
+            ((UserPrincipal) userDetails).getUser().setPassword(newPassword);
+        }
+        LOGGER.info("Upgraded password hash of user {}", userDetails.getUsername());
+        return userDetails;
+    }
+
     private void validateLoginAttempt(User user)  {
         if(user.isNotLocked()){
             if(loginAttemptService.hasExceededMaxAttempts(user.getUsername())){
                 user.setNotLocked(false);
+                userRepository.lockUser(user.getUsername());
+                userPrincipalCache.removeUserFromCache(user.getUsername());
             }else{
                 user.setNotLocked(true);
             }
@@ -103,27 +186,50 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
 
     @Override
-    public List<User> getUsers() {
-        // Check current user's permissions
-        String currentUsername = getCurrentUsername();
-        if (currentUsername == null) {
-            return new ArrayList<>(); // Return empty list if no authenticated user
+    public UserPage getUsers(int size, String sort, String cursor, boolean includeTotal, Set<UserField> fields) throws InvalidPageRequestException {
+        if (size < 1 || size > MAXIMUM_PAGE_SIZE) {
+            throw new InvalidPageRequestException(String.format(PAGE_SIZE_OUT_OF_RANGE, MAXIMUM_PAGE_SIZE));
         }
+        List<UserSortOrder> sortOrders = KeysetCursor.parseSort(sort);
+        Object[] after = StringUtils.isBlank(cursor) ? null : KeysetCursor.decode(cursor, sortOrders);
 
-        User currentUser = userRepository.findUserByUsername(currentUsername);
-        if (currentUser == null) {
-            return new ArrayList<>();
+        // Check current user's permissions
+        Role currentUserRole = actingUser.getRole();
+        if (currentUserRole == null) {
+            return new UserPage(new ArrayList<>(), null, includeTotal ? 0L : null); // Return empty page if no authenticated user
         }
 
-        Role currentUserRole = getRoleEnumName(currentUser.getRole());
-
         // USER role can only see their own profile
         if (currentUserRole == Role.ROLE_USER) {
-            return Collections.singletonList(currentUser);
+            User currentUser = actingUser.getUser();
+            List<Map<String, Object>> users = after == null && currentUser != null
+                    ? Collections.singletonList(UserField.project(currentUser, fields))
+                    : new ArrayList<>();
+            return new UserPage(users, null, includeTotal ? (long) users.size() : null);
+        }
+
+        // HR, MANAGER, ADMIN, SUPER_ADMIN can see all users, one page at a time. One extra row
+        // tells whether there is a next page without a count query.
+        List<Map<String, Object>> users = userRepository.findUserPage(sortOrders, after, size + 1, fields);
+        String nextCursor = null;
+        if (users.size() > size) {
+            users = new ArrayList<>(users.subList(0, size));
+            nextCursor = KeysetCursor.encode(sortOrders, users.get(size - 1));
+        }
+        // Drop the sort attributes and the id where they were only selected for the cursor
+        Set<String> jsonNames = new HashSet<>();
+        for (UserField field : fields) {
+            jsonNames.add(field.getJsonName());
         }
+        for (Map<String, Object> user : users) {
+            user.keySet().retainAll(jsonNames);
+        }
+        return new UserPage(users, nextCursor, includeTotal ? userRepository.count() : null);
+    }
 
-        // HR, MANAGER, ADMIN, SUPER_ADMIN can see all users
-        return userRepository.findAll();
+    @Override
+    public Map<String, Object> findUserFields(String username, Set<UserField> fields) {
+        return userRepository.findUserFields(username, fields);
     }
 
     @Override
@@ -138,6 +244,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
 
     @Override
+    @Transactional(rollbackOn = {UsernameExistException.class, EmailExistException.class})
     public User register(String firstName, String lastName, String username, String email) throws UserNotFoundException, UsernameExistException, EmailExistException, MessagingException {
         validateNewUsernameAndEmail(StringUtils.EMPTY, username, email);
         User user = new User();
@@ -152,19 +259,21 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         user.setPassword(encodedPassword);
         user.setActive(true);
         user.setNotLocked(true);
+        user.setTokenEpoch(tokenEpochService.currentEpoch(username));
         user.setRole(Role.ROLE_USER.name());
         user.setAuthorities(Role.ROLE_USER.getAuthorities());
         user.setProfileImageUrl(getTemporaryProfileImageUrl(username));
-        userRepository.save(user);
+        saveUniqueUser(user);
         LOGGER.info("New User Password " + password);
        // emailService.sendNewPasswordEmail(firstName, password, email);
         return user;
     }
 
     @Override
-    public User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
+    @Transactional(rollbackOn = {UsernameExistException.class, EmailExistException.class, NotAnImageFileException.class})
+    public User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
         // Validate create permissions
-        validateCreatePermission(role);
+        userPermissionService.validateCreatePermission(getRoleEnumName(role));
 
         validateNewUsernameAndEmail(StringUtils.EMPTY, username, email);
         User user = new User();
@@ -179,10 +288,11 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         user.setPassword(encodedPassword);
         user.setActive(isActive);
         user.setNotLocked(isNonLocked);
+        user.setTokenEpoch(tokenEpochService.currentEpoch(username));
         user.setRole(getRoleEnumName(role).name());
         user.setAuthorities(getRoleEnumName(role).getAuthorities());
         user.setProfileImageUrl(getTemporaryProfileImageUrl(username));
-        userRepository.save(user);
+        saveUniqueUser(user);
         LOGGER.info("New User Password " + password);
         saveProfileImage(user, profileImage);
         return user;
@@ -190,11 +300,19 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
 
     @Override
-    public User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
+    @Transactional(rollbackOn = {UsernameExistException.class, EmailExistException.class, NotAnImageFileException.class})
+    public User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
         User currentUser = validateNewUsernameAndEmail(currentUsername, newUsername, newEmail);
 
         // Validate update permissions
-        validateUpdatePermission(currentUsername, role);
+        userPermissionService.validateUpdatePermission(currentUsername, getRoleEnumName(role));
+
+        // Tokens issued before a rename, lock, deactivation or role change must stop working
+        String previousUsername = currentUser.getUsername();
+        boolean revokeTokens = !previousUsername.equals(newUsername)
+                || (currentUser.isActive() && !isActive)
+                || (currentUser.isNotLocked() && !isNonLocked)
+                || !getRoleEnumName(role).name().equals(currentUser.getRole());
 
         currentUser.setFirstName(newFirstName);
         currentUser.setLastName(newLastName);
@@ -204,7 +322,12 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         currentUser.setNotLocked(isNonLocked);
         currentUser.setRole(getRoleEnumName(role).name());
         currentUser.setAuthorities(getRoleEnumName(role).getAuthorities());
-        userRepository.save(currentUser);
+        if (revokeTokens) {
+            tokenEpochService.revokeTokens(currentUser, previousUsername);
+        }
+        saveUniqueUser(currentUser);
+        userPrincipalCache.removeUserFromCache(previousUsername);
+        userPrincipalCache.removeUserFromCache(newUsername);
         saveProfileImage(currentUser, profileImage);
         return currentUser;
     }
@@ -224,7 +347,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
         // Prevent users from deleting themselves (get current user from security context)
         try {
-            String currentUsername = getCurrentUsername();
+            String currentUsername = actingUser.getUsername();
             if (currentUsername != null && currentUsername.equals(userToDelete.getUsername())) {
                 throw new UserNotFoundException("Users cannot delete their own account");
             }
@@ -233,10 +356,82 @@ public class UserServiceImpl implements UserService, UserDetailsService {
             LOGGER.warn("Could not determine current user context for delete operation");
         }
 
+        tokenEpochService.revokeTokensOfDeletedUser(userToDelete);
         userRepository.delete(userToDelete);
+        userPrincipalCache.removeUserFromCache(userToDelete.getUsername());
         LOGGER.info("User deleted successfully: {}", userToDelete.getUsername());
     }
 
+    @Override
+    public int updateUsers(BulkUserRequest request) throws UserNotFoundException, InvalidBulkRequestException {
+        BulkAction action = request.getAction();
+        if (action == null) {
+            throw new InvalidBulkRequestException(BULK_ACTION_REQUIRED);
+        }
+        Role newRole = null;
+        if (action == BulkAction.CHANGE_ROLE) {
+            if (StringUtils.isBlank(request.getNewRole())) {
+                throw new InvalidBulkRequestException(NEW_ROLE_REQUIRED);
+            }
+            newRole = parseBulkRole(request.getNewRole());
+            userPermissionService.validateUpdatePermission(newRole);
+        }
+        List<BulkUserTarget> targets = findBulkTargets(request);
+        Role role = newRole;
+        targets.removeIf(target -> !isChangedBy(action, role, target));
+        validateBulkPermission(targets);
+
+        List<Long> ids = new ArrayList<>(targets.size());
+        for (BulkUserTarget target : targets) {
+            ids.add(target.getId());
+        }
+        for (List<Long> statementIds : Lists.partition(ids, BULK_STATEMENT_SIZE)) {
+            switch (action) {
+                case LOCK:
+                case UNLOCK:
+                    userRepository.updateNotLocked(statementIds, action == BulkAction.UNLOCK);
+                    break;
+                case ACTIVATE:
+                case DEACTIVATE:
+                    userRepository.updateActive(statementIds, action == BulkAction.ACTIVATE);
+                    break;
+                case CHANGE_ROLE:
+                    userRepository.updateRole(statementIds, role.name(), role.getAuthorities());
+                    break;
+            }
+            if (action.revokesTokens()) {
+                userRepository.revokeTokens(statementIds);
+            }
+        }
+        if (action.revokesTokens()) {
+            tokenEpochService.revokeTokens(storedEpochs(targets));
+        }
+        userPrincipalCache.removeUsersFromCache(usernames(targets));
+        LOGGER.info("Bulk {} applied to {} users", action, targets.size());
+        return targets.size();
+    }
+
+    @Override
+    public int deleteUsers(BulkUserRequest request) throws UserNotFoundException, InvalidBulkRequestException {
+        List<BulkUserTarget> targets = findBulkTargets(request);
+        // Same rule as a single delete, the super admin is never deleted
+        targets.removeIf(target -> "supportPortal".equals(target.getUsername()));
+        validateBulkPermission(targets);
+
+        List<Long> ids = new ArrayList<>(targets.size());
+        for (BulkUserTarget target : targets) {
+            ids.add(target.getId());
+        }
+        for (List<Long> statementIds : Lists.partition(ids, BULK_STATEMENT_SIZE)) {
+            userRepository.deleteByIds(statementIds);
+        }
+        // A user created later under one of these usernames must not accept their old tokens
+        tokenEpochService.revokeTokensOfDeletedUsers(storedEpochs(targets));
+        userPrincipalCache.removeUsersFromCache(usernames(targets));
+        LOGGER.info("Bulk deleted {} users", targets.size());
+        return targets.size();
+    }
+
     @Override
     public void resetPassword(String email) throws EmailNotFoundException {
         User user = userRepository.findUserByEmail(email);
@@ -245,37 +440,39 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
         String password = generatePassword();
         user.setPassword(encodePassword(password));
+        tokenEpochService.revokeTokens(user);
         userRepository.save(user);
+        userPrincipalCache.removeUserFromCache(user.getUsername());
         LOGGER.info("New User Password " + password);
     }
 
 
     @Override
-    public User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
+    public User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException, NotAnImageFileException {
         User user = validateNewUsernameAndEmail(username, null, null);
         saveProfileImage(user, profileImage);
+        userPrincipalCache.removeUserFromCache(username);
         return user;
     }
 
 
 
-    private void saveProfileImage(User user, MultipartFile profileImage) throws IOException {
+    private void saveProfileImage(User user, MultipartFile profileImage) throws IOException, NotAnImageFileException {
         if(profileImage != null){
-            Path userFolder = Paths.get(USER_FOLDER + user.getUsername()).toAbsolutePath().normalize();
-            if(!Files.exists(userFolder)){
-                Files.createDirectories(userFolder);
-                LOGGER.info(DIRECTORY_CREATED + userFolder);
+            String version;
+            try (InputStream image = profileImage.getInputStream()) {
+                version = profileImageService.store(user.getUsername(), image);
             }
-            Files.deleteIfExists(Paths.get(userFolder + user.getUsername() + DOT + JPG_EXTENSION));
-            Files.copy(profileImage.getInputStream(), userFolder.resolve(user.getUsername() + DOT + JPG_EXTENSION ), REPLACE_EXISTING);
-            user.setProfileImageUrl(setProfileImageUrl(user.getUsername()));
+            user.setProfileImageUrl(setProfileImageUrl(user.getUsername(), version));
             userRepository.save(user);
             LOGGER.info(FILE_SAVED_IN_FILE_SYSTEM + profileImage.getOriginalFilename());
         }
     }
 
-    private String setProfileImageUrl(String username) {
-        return ServletUriComponentsBuilder.fromCurrentContextPath().path(USER_IMAGE_PATH + username + FORWARD_SLASH + username + DOT + JPG_EXTENSION).toUriString();
+    // The version changes with every upload, so the image behind a URL never changes
+    private String setProfileImageUrl(String username, String version) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath().path(USER_IMAGE_PATH + username + FORWARD_SLASH + username + DOT + JPG_EXTENSION)
+                .queryParam(PROFILE_IMAGE_VERSION_PARAMETER, version).toUriString();
     }
 
 
@@ -283,6 +480,80 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         return ServletUriComponentsBuilder.fromCurrentContextPath().path(DEFAULT_USER_IMAGE_PATH + username).toUriString();
     }
 
+    // Selected users other than the acting one, row locked until the transaction ends
+    private List<BulkUserTarget> findBulkTargets(BulkUserRequest request) throws InvalidBulkRequestException, UserNotFoundException {
+        List<String> usernames = request.getUsernames();
+        if (usernames == null && request.getRole() == null && request.getActive() == null && request.getNotLocked() == null) {
+            throw new InvalidBulkRequestException(BULK_SELECTION_REQUIRED);
+        }
+        if (usernames != null && usernames.size() > MAXIMUM_BULK_USERNAMES) {
+            throw new InvalidBulkRequestException(String.format(TOO_MANY_BULK_USERNAMES, MAXIMUM_BULK_USERNAMES));
+        }
+        if (usernames != null && usernames.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String role = request.getRole() == null ? null : parseBulkRole(request.getRole()).name();
+        userPermissionService.getActingUserRole();
+        String currentUsername = actingUser.getUsername();
+        List<BulkUserTarget> targets = new ArrayList<>(
+                userRepository.findBulkTargets(usernames, role, request.getActive(), request.getNotLocked()));
+        targets.removeIf(target -> target.getUsername().equals(currentUsername));
+        return targets;
+    }
+
+    /**
+     * Applies the rules of a single update to users holding each of the targets' roles. They
+     * only depend on the role, so they run once per distinct role however many users there are.
+     */
+    private void validateBulkPermission(List<BulkUserTarget> targets) throws UserNotFoundException {
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        for (BulkUserTarget target : targets) {
+            roles.add(getRoleEnumName(target.getRole()));
+        }
+        for (Role role : roles) {
+            userPermissionService.validateUpdatePermission(role);
+        }
+    }
+
+    private static boolean isChangedBy(BulkAction action, Role newRole, BulkUserTarget target) {
+        switch (action) {
+            case LOCK:
+                return target.isNotLocked();
+            case UNLOCK:
+                return !target.isNotLocked();
+            case ACTIVATE:
+                return !target.isActive();
+            case DEACTIVATE:
+                return target.isActive();
+            default:
+                return !newRole.name().equals(target.getRole());
+        }
+    }
+
+    private Role parseBulkRole(String role) throws InvalidBulkRequestException {
+        try {
+            return getRoleEnumName(role.trim());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidBulkRequestException(UNKNOWN_ROLE + role);
+        }
+    }
+
+    private static Map<String, Long> storedEpochs(List<BulkUserTarget> targets) {
+        Map<String, Long> storedEpochs = new HashMap<>();
+        for (BulkUserTarget target : targets) {
+            storedEpochs.put(target.getUsername(), target.getTokenEpoch());
+        }
+        return storedEpochs;
+    }
+
+    private static List<String> usernames(List<BulkUserTarget> targets) {
+        List<String> usernames = new ArrayList<>(targets.size());
+        for (BulkUserTarget target : targets) {
+            usernames.add(target.getUsername());
+        }
+        return usernames;
+    }
+
     private Role getRoleEnumName(String role) {
         return Role.valueOf(role.toUpperCase());
     }
@@ -296,151 +567,64 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     }
 
     private String generateUserId() {
-        return RandomStringUtils.randomNumeric(10);
+        return userIdGenerator.generateUserId();
     }
 
     private User validateNewUsernameAndEmail(String currentUsername, String newUsername, String newEmail) throws UsernameExistException, EmailExistException, UserNotFoundException {
-        User userByNewUsername = findUserByUsername(newUsername);
-        User userByNewEmail = findUserByEmail(newEmail);
+        User currentUser = null;
         if(StringUtils.isNotBlank(currentUsername)){
-            User currentUser = findUserByUsername(currentUsername);
+            currentUser = findUserByUsername(currentUsername);
             if(currentUser == null){
                 throw new UserNotFoundException(NO_USER_FOUND_BY_USERNAME + currentUsername);
             }
-
-            if(userByNewUsername != null && !currentUser.getId().equals(userByNewUsername.getId())){
-                throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
-            }
-
-            if(userByNewEmail != null && !currentUser.getId().equals(userByNewEmail.getId())){
-                throw new EmailExistException(EMAIL_ALREADY_EXISTS);
-            }
+        }
+        if(newUsername == null && newEmail == null){
             return currentUser;
-        }else{
-            if(userByNewUsername != null){
-                throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
-            }
-            if(userByNewEmail != null){
-                throw new EmailExistException(EMAIL_ALREADY_EXISTS);
-            }
-            return null;
         }
-    }
-
-    private String getCurrentUsername() {
-        try {
-            Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-            if (principal instanceof UserDetails) {
-                return ((UserDetails) principal).getUsername();
-            } else if (principal instanceof String) {
-                return (String) principal;
+        // Ids start at 1, so 0 excludes nobody when there is no current user
+        Long excludedId = currentUser == null ? 0L : currentUser.getId();
+        List<UserIdentity> conflicts = userRepository.findUsernameOrEmailConflicts(newUsername, newEmail, excludedId);
+        for (UserIdentity conflict : conflicts) {
+            if(conflict.getUsername().equals(newUsername)){
+                throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
             }
-        } catch (Exception e) {
-            // Return null if we can't get the current user
         }
-        return null;
-    }
-
-    private void validateCreatePermission(String role) throws UserNotFoundException {
-        String currentUsername = getCurrentUsername();
-        if (currentUsername == null) {
-            throw new UserNotFoundException("Unable to determine current user");
-        }
-
-        User currentUser = userRepository.findUserByUsername(currentUsername);
-        if (currentUser == null) {
-            throw new UserNotFoundException("Current user not found");
-        }
-
-        Role currentUserRole = getRoleEnumName(currentUser.getRole());
-        Role newUserRole = getRoleEnumName(role);
-
-        // Check if current user has create permission
-        if (!hasAuthority(currentUserRole, "user:create")) {
-            throw new UserNotFoundException("Insufficient privileges to create users");
-        }
-
-        // ADMIN cannot create SUPER_ADMIN users
-        if (currentUserRole == Role.ROLE_ADMIN && newUserRole == Role.ROLE_SUPER_ADMIN) {
-            throw new UserNotFoundException("ADMIN users cannot create SUPER_ADMIN users");
-        }
-
-        // Users cannot create users with higher roles than themselves (except SUPER_ADMIN)
-        if (currentUserRole != Role.ROLE_SUPER_ADMIN && getRoleLevel(newUserRole) > getRoleLevel(currentUserRole)) {
-            throw new UserNotFoundException("Cannot create users with higher role than yourself. Your role: " +
-                currentUserRole + ", Requested role: " + newUserRole);
+        if(!conflicts.isEmpty()){
+            throw new EmailExistException(EMAIL_ALREADY_EXISTS);
         }
+        return currentUser;
     }
 
-    private void validateUpdatePermission(String targetUsername, String newRole) throws UserNotFoundException {
-        String currentUsername = getCurrentUsername();
-        if (currentUsername == null) {
-            throw new UserNotFoundException("Unable to determine current user");
-        }
-
-        User currentUser = userRepository.findUserByUsername(currentUsername);
-        if (currentUser == null) {
-            throw new UserNotFoundException("Current user not found");
-        }
-
-        Role currentUserRole = getRoleEnumName(currentUser.getRole());
-
-        // Check if current user has update permission
-        if (!hasAuthority(currentUserRole, "user:update")) {
-            throw new UserNotFoundException("Insufficient privileges to update users");
-        }
-
-        // If updating someone else (not themselves)
-        if (!currentUsername.equals(targetUsername)) {
-            // Only ADMIN and SUPER_ADMIN can update other users
-            if (getRoleLevel(currentUserRole) < getRoleLevel(Role.ROLE_ADMIN)) {
-                throw new UserNotFoundException("Only ADMIN and SUPER_ADMIN can update other users");
-            }
-
-            // ADMIN cannot promote users to SUPER_ADMIN
-            if (currentUserRole == Role.ROLE_ADMIN && getRoleEnumName(newRole) == Role.ROLE_SUPER_ADMIN) {
-                throw new UserNotFoundException("ADMIN users cannot promote users to SUPER_ADMIN");
-            }
-
-            // Cannot assign roles higher than current user's role (except SUPER_ADMIN)
-            if (currentUserRole != Role.ROLE_SUPER_ADMIN && getRoleLevel(getRoleEnumName(newRole)) > getRoleLevel(currentUserRole)) {
-                throw new UserNotFoundException("Cannot assign roles higher than your own. Your role: " +
-                    currentUserRole + ", Requested role: " + newRole);
+    /**
+     * Saves and flushes right away, so a username or email taken by a concurrent request
+     * between the check above and the insert surfaces here as the same exception the check
+     * would have thrown, instead of as a constraint violation at commit.
+     */
+    private void saveUniqueUser(User user) throws UsernameExistException, EmailExistException {
+        try {
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            String constraint = violatedConstraint(e);
+            if (constraint.contains(USERNAME_UNIQUE_CONSTRAINT)) {
+                throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
             }
-        } else {
-            // User updating themselves - cannot escalate privileges
-            User targetUser = userRepository.findUserByUsername(targetUsername);
-            if (targetUser != null) {
-                Role targetUserRole = getRoleEnumName(targetUser.getRole());
-                Role requestedRole = getRoleEnumName(newRole);
-
-                if (getRoleLevel(requestedRole) > getRoleLevel(targetUserRole)) {
-                    throw new UserNotFoundException("Users cannot escalate their own privileges. Current role: " +
-                        targetUserRole + ", Requested role: " + requestedRole);
-                }
+            if (constraint.contains(EMAIL_UNIQUE_CONSTRAINT)) {
+                throw new EmailExistException(EMAIL_ALREADY_EXISTS);
             }
+            throw e;
         }
     }
 
-    private boolean hasAuthority(Role role, String authority) {
-        String[] authorities = role.getAuthorities();
-        for (String auth : authorities) {
-            if (auth.equals(authority)) {
-                return true;
-            }
+    private String violatedConstraint(DataIntegrityViolationException exception) {
+        Throwable cause = exception.getCause();
+        String constraint = null;
+        if (cause instanceof ConstraintViolationException) {
+            constraint = ((ConstraintViolationException) cause).getConstraintName();
         }
-        return false;
-    }
-
-    private int getRoleLevel(Role role) {
-        switch (role) {
-            case ROLE_USER: return 1;
-            case ROLE_HR: return 2;
-            case ROLE_MANAGER: return 3;
-            case ROLE_ADMIN: return 4;
-            case ROLE_SUPER_ADMIN: return 5;
-            default: return 0;
+        if (constraint == null) {
+            constraint = exception.getMostSpecificCause().getMessage();
         }
+        return StringUtils.defaultString(constraint).toLowerCase();
     }
 
 }
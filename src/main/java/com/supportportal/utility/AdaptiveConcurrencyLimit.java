@@ -0,0 +1,97 @@
+package com.supportportal.utility;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to the measured latency, after the gradient algorithm.
+ * <p>
+ * A long-term average of the request latency serves as the no-load baseline. Each completed
+ * request compares it to its own latency: while they agree the limit grows by roughly its
+ * square root, and as requests start queueing behind one another the ratio drops below 1 and
+ * the limit shrinks with it. Latency up to {@link #RTT_TOLERANCE} times the baseline is
+ * accepted as noise. The limit only grows while at least half of it is in use, so an idle
+ * partition does not drift to the maximum.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile double limit;
+
+    // guarded by this
+    private double longRttNanos;
+    private long samples;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @return the requests in flight including this one, or 0 if the limit is reached
+     */
+    public int tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                return 0;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return current + 1;
+    }
+
+    /**
+     * @param rttNanos        how long the request took
+     * @param inFlightAtStart what {@link #tryAcquire()} returned for the request
+     */
+    public void release(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        onSample(Math.max(1, rttNanos), inFlightAtStart);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public void bindTo(MeterRegistry meterRegistry, String partition) {
+        Gauge.builder("concurrency.limit", this, AdaptiveConcurrencyLimit::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("partition", partition)
+                .register(meterRegistry);
+        Gauge.builder("concurrency.in-flight", this, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Requests currently holding a concurrency permit")
+                .tag("partition", partition)
+                .register(meterRegistry);
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        if (samples < LONG_WINDOW) {
+            samples++;
+            longRttNanos += (rttNanos - longRttNanos) / samples;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        }
+        double currentLimit = limit;
+        if (inFlightAtStart < currentLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+        double newLimit = currentLimit * gradient + Math.sqrt(currentLimit);
+        newLimit = currentLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
@@ -0,0 +1,60 @@
+package com.supportportal.utility;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the BCrypt cost for the hardware the application runs on: the highest strength whose
+ * hash time stays within the target, never below the configured minimum. Each extra strength
+ * step doubles the work, so the search stops as soon as the next step would overshoot.
+ */
+@Slf4j
+@Getter
+public class BCryptCalibration {
+
+    private static final String SAMPLE_PASSWORD = "calibration-sample-password";
+
+    private final int strength;
+    private final double hashMillis;
+
+    private BCryptCalibration(int strength, double hashMillis) {
+        this.strength = strength;
+        this.hashMillis = hashMillis;
+    }
+
+    public static BCryptCalibration calibrate(int minStrength, int maxStrength, long targetMillis) {
+        int strength = minStrength;
+        double hashMillis = measure(strength);
+        while (strength < maxStrength && hashMillis * 2 <= targetMillis) {
+            strength++;
+            hashMillis = measure(strength);
+        }
+        log.info("Calibrated BCrypt strength {} ({} ms per hash, target {} ms)",
+                strength, String.format("%.1f", hashMillis), targetMillis);
+        return new BCryptCalibration(strength, hashMillis);
+    }
+
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("password.hashing.bcrypt.strength", this, BCryptCalibration::getStrength)
+                .description("BCrypt cost chosen at startup")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.bcrypt.hash.millis", this, BCryptCalibration::getHashMillis)
+                .description("Measured time of one BCrypt hash at the chosen cost")
+                .register(meterRegistry);
+    }
+
+    // Best of two runs, so JIT warm-up of the first hash does not inflate the measurement
+    private static double measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000.0);
+        }
+        return best;
+    }
+}
@@ -5,25 +5,64 @@ import com.supportportal.enumeration.Role;
 import com.supportportal.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.Date;
 
+import static com.supportportal.constant.UserImplConstant.USER_SEQUENCE;
+import static com.supportportal.constant.UserImplConstant.USER_SEQUENCE_ALLOCATION_SIZE;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class DatabaseSeeder implements CommandLineRunner {
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final PasswordEncoder passwordEncoder;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final UserIdGenerator userIdGenerator;
 
     @Override
     public void run(String... args) throws Exception {
+        alignUserSequence();
         createSuperAdminUserIfNotExists();
     }
 
+    private void alignUserSequence() {
+        // Users created before ids came from the user sequence may already hold the ids of its
+        // next blocks; move it past the highest id. Only ever forward, never restarted: other
+        // instances may be handing out blocks from it while this one starts
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from \"user\"", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        String nextValueQuery = dialect.getSequenceNextValString(USER_SEQUENCE);
+        Long nextValue = jdbcTemplate.queryForObject(nextValueQuery, Long.class);
+        if (nextValue == null || nextValue - USER_SEQUENCE_ALLOCATION_SIZE >= maxId) {
+            return;
+        }
+        if (dialect instanceof PostgreSQL81Dialect) {
+            // The next block then starts right after the highest id
+            nextValue = jdbcTemplate.queryForObject("select setval('" + USER_SEQUENCE + "', greatest(nextval('" + USER_SEQUENCE + "'), ?))",
+                    Long.class, maxId);
+        } else {
+            // No setval elsewhere, draw blocks until past the highest id
+            while (nextValue - USER_SEQUENCE_ALLOCATION_SIZE < maxId) {
+                nextValue = jdbcTemplate.queryForObject(nextValueQuery, Long.class);
+            }
+        }
+        log.info("Moved {} forward to {}, past the highest existing user id {}", USER_SEQUENCE, nextValue, maxId);
+    }
+
     private void createSuperAdminUserIfNotExists() {
         // Check if super admin user already exists
         if (userRepository.findUserByUsername("supportPortal") != null) {
@@ -35,14 +74,14 @@ public class DatabaseSeeder implements CommandLineRunner {
 
         // Create super admin user
         User superAdmin = new User();
-        superAdmin.setUserId(generateUserId());
+        superAdmin.setUserId(userIdGenerator.generateUserId());
         superAdmin.setFirstName("Support");
         superAdmin.setLastName("Portal");
         superAdmin.setUsername("supportPortal");
         superAdmin.setEmail("admin@supportportal.com");
 
         // Set password to "supportPortal"
-        String encodedPassword = bCryptPasswordEncoder.encode("supportPortal");
+        String encodedPassword = passwordEncoder.encode("supportPortal");
         superAdmin.setPassword(encodedPassword);
 
         // Set super admin role and authorities
@@ -65,10 +104,6 @@ public class DatabaseSeeder implements CommandLineRunner {
         log.warn("⚠️  IMPORTANT: Change the default password 'supportPortal' after first login!");
     }
 
-    private String generateUserId() {
-        return java.util.UUID.randomUUID().toString();
-    }
-
     private String getTemporaryProfileImageUrl(String username) {
         // During startup, we can't use ServletUriComponentsBuilder
         // Use a simple default image URL
@@ -1,97 +1,153 @@
 package com.supportportal.utility;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.supportportal.constant.SecurityConstant;
+import com.supportportal.domain.JwtAuthenticationDetails;
 import com.supportportal.domain.UserPrincipal;
+import com.supportportal.domain.VerifiedToken;
+import com.supportportal.enumeration.Permission;
+import com.supportportal.enumeration.Role;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import static java.util.Arrays.stream;
 
 @Slf4j
 @Component
 public class JWTTokenProvider {
 
-    @Value("${jwt.secret}")
-    private String secret;
+
+    // The HMAC key and the verifier are immutable and thread-safe, so they are built once
+    // instead of on every call.
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    public JWTTokenProvider(@Value("${jwt.secret}") String secret, VerifiedTokenCache verifiedTokenCache) {
+        this.algorithm = Algorithm.HMAC512(secret);
+        this.verifier = JWT.require(algorithm).withIssuer(SecurityConstant.GET_ARRAYS_LLC).build();
+        this.verifiedTokenCache = verifiedTokenCache;
+    }
 
     public String generateJwtToken(UserPrincipal userPrincipal){
-        String[] claims = getClaimsFromUser(userPrincipal);
-        return JWT.create()
-                .withIssuer(SecurityConstant.GET_ARRAYS_LLC)
-                .withAudience(SecurityConstant.GET_ARRAYS_ADMINISTRATION)
-                .withIssuedAt(new Date())
-                .withSubject(userPrincipal.getUsername())
-                .withArrayClaim(SecurityConstant.AUTHORITIES, claims)
+        return createToken(userPrincipal.getUsername(), userPrincipal.getUser().getRole(),
+                Permission.maskOf(userPrincipal.getAuthorities()), userPrincipal.getTokenEpoch())
                 .withExpiresAt(new Date( System.currentTimeMillis()+ SecurityConstant.EXPIRATION_TIME))
-                .sign(Algorithm.HMAC512(secret.getBytes()));
+                .sign(algorithm);
+    }
+
+    public String generateRefreshToken(UserPrincipal userPrincipal){
+        return createToken(userPrincipal.getUsername(), userPrincipal.getUser().getRole(),
+                Permission.maskOf(userPrincipal.getAuthorities()), userPrincipal.getTokenEpoch())
+                .withClaim(SecurityConstant.TOKEN_USE, SecurityConstant.REFRESH_TOKEN_USE)
+                .withExpiresAt(new Date( System.currentTimeMillis()+ SecurityConstant.REFRESH_EXPIRATION_TIME))
+                .sign(algorithm);
+    }
+
+    /**
+     * Verifies the signature, issuer and expiry of the token once and decodes every claim
+     * the authorization filter needs from that single pass. Tokens seen before are served
+     * from the {@link VerifiedTokenCache} without verifying or decoding them again.
+     *
+     * @throws com.auth0.jwt.exceptions.JWTVerificationException if the token is invalid or expired
+     */
+    public VerifiedToken verifyToken(String token){
+        return verifiedTokenCache.getOrVerify(token, this::decodeToken);
+    }
+
+    /**
+     * Verifies a refresh token. Refresh tokens are never cached and only accepted here.
+     *
+     * @throws JWTVerificationException if the token is invalid, expired or not a refresh token
+     */
+    public VerifiedToken verifyRefreshToken(String token){
+        DecodedJWT decodedJWT = verifier.verify(token);
+        if (!isRefreshToken(decodedJWT)) {
+            throw new JWTVerificationException(SecurityConstant.TOKEN_CANNOT_BE_VERIFIED);
+        }
+        return toVerifiedToken(decodedJWT);
     }
 
-    public List<GrantedAuthority> getAuthorities(String token){
-        String[] claims =  getClaimsFromToken(token);
-        return stream(claims).map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+    private VerifiedToken decodeToken(String token){
+        DecodedJWT decodedJWT = verifier.verify(token);
+        if (isRefreshToken(decodedJWT)) {
+            throw new JWTVerificationException(SecurityConstant.TOKEN_CANNOT_BE_VERIFIED);
+        }
+        return toVerifiedToken(decodedJWT);
+    }
+
+    private VerifiedToken toVerifiedToken(DecodedJWT decodedJWT){
+        return new VerifiedToken(decodedJWT.getSubject(), decodedJWT.getExpiresAt(), getRole(decodedJWT),
+                getTokenEpoch(decodedJWT), getAuthorities(decodedJWT));
     }
 
-    public Authentication getAuthentication(String username, List<GrantedAuthority> authorities, HttpServletRequest request){
+    public Authentication getAuthentication(VerifiedToken token, HttpServletRequest request){
         UsernamePasswordAuthenticationToken userPasswordToken = new
-                UsernamePasswordAuthenticationToken(username, null, authorities);
-        userPasswordToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                UsernamePasswordAuthenticationToken(token.getSubject(), null, token.getAuthorities());
+        userPasswordToken.setDetails(new JwtAuthenticationDetails(request, token.getRole()));
         return userPasswordToken;
     }
 
-    public boolean isTokenValid(String username, String token){
-        JWTVerifier verifier = getJWTVerifier();
-        return StringUtils.isNotEmpty(username) && !isTokenExpired(verifier, token);
+    public boolean isTokenValid(VerifiedToken token){
+        return StringUtils.isNotEmpty(token.getSubject()) && !isTokenExpired(token);
     }
 
-    public String getSubject(String token){
-        JWTVerifier verifier = getJWTVerifier();
-        log.info(token);
-        return verifier.verify(token).getSubject();
+    private boolean isTokenExpired(VerifiedToken token) {
+        Date expiration = token.getExpiresAt();
+        return expiration == null || expiration.before(new Date());
     }
 
-    private boolean isTokenExpired(JWTVerifier verifier, String token) {
-        Date expiration = verifier.verify(token).getExpiresAt();
-        return expiration.before(new Date());
+    private List<GrantedAuthority> getAuthorities(DecodedJWT decodedJWT) {
+        Integer permissions = decodedJWT.getClaim(SecurityConstant.PERMISSIONS).asInt();
+        if (permissions != null) {
+            return Permission.grantedAuthoritiesOf(permissions);
+        }
+        // Tokens issued before the compact claim carry the full authority array
+        String[] claims = decodedJWT.getClaim(SecurityConstant.AUTHORITIES).asArray(String.class);
+        return Role.grantedAuthoritiesOf(claims);
+    }
+
+    private JWTCreator.Builder createToken(String subject, String role, int permissions, long tokenEpoch) {
+        return JWT.create()
+                .withIssuer(SecurityConstant.GET_ARRAYS_LLC)
+                .withAudience(SecurityConstant.GET_ARRAYS_ADMINISTRATION)
+                .withIssuedAt(new Date())
+                .withSubject(subject)
+                .withClaim(SecurityConstant.ROLE, role)
+                .withClaim(SecurityConstant.PERMISSIONS, permissions)
+                .withClaim(SecurityConstant.TOKEN_EPOCH, tokenEpoch);
     }
 
-    private String[] getClaimsFromToken(String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier.verify(token).getClaim(SecurityConstant.AUTHORITIES).asArray(String.class);
+    private boolean isRefreshToken(DecodedJWT decodedJWT) {
+        return SecurityConstant.REFRESH_TOKEN_USE.equals(decodedJWT.getClaim(SecurityConstant.TOKEN_USE).asString());
     }
 
-    private JWTVerifier getJWTVerifier() {
-        JWTVerifier verifier;
-        try {
-            Algorithm algorithm = Algorithm.HMAC512(secret);
-            verifier = JWT.require(algorithm).withIssuer(SecurityConstant.GET_ARRAYS_LLC).build();
-        }catch(JWTVerificationException exception){
-            throw new JWTVerificationException(SecurityConstant.TOKEN_CANNOT_BE_VERIFIED);
-        }
-        return verifier;
+    private long getTokenEpoch(DecodedJWT decodedJWT) {
+        Long tokenEpoch = decodedJWT.getClaim(SecurityConstant.TOKEN_EPOCH).asLong();
+        return tokenEpoch == null ? 0L : tokenEpoch;
     }
 
-    private String[] getClaimsFromUser(UserPrincipal user) {
-        List<String> authorities = new ArrayList<>();
-        for (GrantedAuthority grantedAuthority : user.getAuthorities()){
-            authorities.add(grantedAuthority.getAuthority());
+    private Role getRole(DecodedJWT decodedJWT) {
+        String role = decodedJWT.getClaim(SecurityConstant.ROLE).asString();
+        if (role == null) {
+            return null;
+        }
+        try {
+            return Role.valueOf(role);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-        return authorities.toArray(new String[0]);
     }
 }
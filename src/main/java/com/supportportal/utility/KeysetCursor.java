@@ -0,0 +1,98 @@
+package com.supportportal.utility;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supportportal.domain.UserSortOrder;
+import com.supportportal.enumeration.UserSortKey;
+import com.supportportal.exception.domain.InvalidPageRequestException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses the sort parameter of {@code /user/list} and encodes the position after the last
+ * user of a page as an opaque cursor: the sort it was made for, the sort values of that user
+ * and its id, as a URL-safe Base64 JSON array.
+ */
+public class KeysetCursor {
+
+    public static final String INVALID_SORT = "Unknown sort key: %s";
+    public static final String INVALID_CURSOR = "The cursor is invalid or belongs to a different sort";
+    private static final String ID = "id";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Parses comma separated attributes, each optionally prefixed with '-' for descending.
+     */
+    public static List<UserSortOrder> parseSort(String sort) throws InvalidPageRequestException {
+        List<UserSortOrder> sortOrders = new ArrayList<>();
+        Set<UserSortKey> seen = new LinkedHashSet<>();
+        for (String part : StringUtils.split(StringUtils.defaultString(sort), ',')) {
+            String attribute = part.trim();
+            boolean ascending = !attribute.startsWith("-");
+            UserSortKey sortKey = UserSortKey.fromAttribute(ascending ? attribute : attribute.substring(1));
+            if (sortKey == null) {
+                throw new InvalidPageRequestException(String.format(INVALID_SORT, attribute));
+            }
+            if (seen.add(sortKey)) {
+                sortOrders.add(new UserSortOrder(sortKey, ascending));
+            }
+        }
+        if (sortOrders.isEmpty()) {
+            sortOrders.add(new UserSortOrder(UserSortKey.USERNAME, true));
+        }
+        return sortOrders;
+    }
+
+    /**
+     * @param lastRow the last row of the page, holding the sort attributes and the id
+     */
+    public static String encode(List<UserSortOrder> sortOrders, Map<String, Object> lastRow) {
+        List<Object> values = new ArrayList<>(sortOrders.size() + 2);
+        values.add(sortOrders.toString());
+        for (UserSortOrder sortOrder : sortOrders) {
+            UserSortKey sortKey = sortOrder.getSortKey();
+            values.add(sortKey.cursorValueOf(lastRow.get(sortKey.getAttribute())));
+        }
+        values.add(lastRow.get(ID));
+        try {
+            byte[] json = MAPPER.writeValueAsBytes(values);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the sort values of the last user followed by its id, in the types of the attributes;
+     *         sort values may be null
+     */
+    public static Object[] decode(String cursor, List<UserSortOrder> sortOrders) throws InvalidPageRequestException {
+        try {
+            List<?> values = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII)), List.class);
+            if (values.size() != sortOrders.size() + 2 || !sortOrders.toString().equals(values.get(0))) {
+                throw new InvalidPageRequestException(INVALID_CURSOR);
+            }
+            Object[] after = new Object[sortOrders.size() + 1];
+            for (int index = 0; index < sortOrders.size(); index++) {
+                // Null when the last user has no value for the attribute
+                Object value = values.get(index + 1);
+                after[index] = value == null ? null : sortOrders.get(index).getSortKey().attributeValueOf(value);
+            }
+            after[sortOrders.size()] = ((Number) values.get(values.size() - 1)).longValue();
+            return after;
+        } catch (IllegalArgumentException | ClassCastException | NullPointerException | IOException e) {
+            throw new InvalidPageRequestException(INVALID_CURSOR);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.supportportal.utility;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ULID style ids: 26 Crockford base32 characters encoding 128 bits, a 48 bit millisecond
+ * timestamp and a 16 bit sequence followed by 64 random bits. The timestamp and sequence are
+ * taken from a single {@link AtomicLong} that only ever moves forward, so ids sort in the order
+ * they were generated, even across threads and when the clock steps back, without any lock.
+ * The sequence absorbs up to 65536 ids per millisecond before borrowing from the next one.
+ */
+@Component
+public class TimeOrderedUserIdGenerator implements UserIdGenerator {
+
+    public static final int LENGTH = 26;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int SEQUENCE_BITS = 16;
+
+    private final AtomicLong lastPrefix = new AtomicLong();
+    private final Clock clock;
+
+    public TimeOrderedUserIdGenerator() {
+        this(Clock.systemUTC());
+    }
+
+    TimeOrderedUserIdGenerator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String generateUserId() {
+        long prefix = lastPrefix.accumulateAndGet(clock.millis() << SEQUENCE_BITS, (last, now) -> Math.max(now, last + 1));
+        return encode(prefix, ThreadLocalRandom.current().nextLong());
+    }
+
+    private static String encode(long high, long low) {
+        char[] chars = new char[LENGTH];
+        for (int index = LENGTH - 1; index >= 0; index--) {
+            chars[index] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,96 @@
+package com.supportportal.utility;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Fixed-size, lock-free table of token buckets keyed by client.
+ * <p>
+ * Buckets follow the generic cell rate algorithm: instead of a token count each bucket stores
+ * the theoretical arrival time of the next request, so taking a token is one compare-and-set
+ * and refilling needs no timer. Every slot is a single {@code long}: a 24-bit fingerprint of
+ * the key and the 40-bit arrival time in milliseconds since the table was created.
+ * <p>
+ * A key may live in one of two slots. A slot whose bucket is full again is free for any key,
+ * so idle clients never need evicting; only when both slots are busy with other clients does
+ * the key share the first one, which can only make the limit stricter, never looser. Hashes
+ * are seeded per table so clients cannot pick colliding keys on purpose.
+ */
+public class TokenBucketTable {
+
+    private static final int TIME_BITS = 40;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long FINGERPRINT_MASK = (1L << (Long.SIZE - TIME_BITS)) - 1;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final long emissionIntervalMillis;
+    private final long burstToleranceMillis;
+    private final long startMillis = System.currentTimeMillis();
+    private final HashFunction hashFunction = Hashing.murmur3_128(new SecureRandom().nextInt());
+
+    public TokenBucketTable(int size, int capacity, int refillPerMinute) {
+        if (capacity < 1 || refillPerMinute < 1) {
+            throw new IllegalArgumentException("Token buckets need a positive capacity and refill rate");
+        }
+        int tableSize = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+        this.slots = new AtomicLongArray(tableSize);
+        this.mask = tableSize - 1;
+        this.emissionIntervalMillis = Math.max(1, MINUTES.toMillis(1) / refillPerMinute);
+        this.burstToleranceMillis = emissionIntervalMillis * capacity;
+    }
+
+    /**
+     * Takes one token from the bucket of the key.
+     *
+     * @return 0 if the request is allowed, otherwise the milliseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        long hash = hashFunction.hashUnencodedChars(key).asLong();
+        long fingerprint = (hash >>> TIME_BITS) & FINGERPRINT_MASK;
+        int first = (int) hash & mask;
+        int second = (int) (hash >>> 20) & mask;
+        long now = (System.currentTimeMillis() - startMillis) & TIME_MASK;
+        while (true) {
+            int index = selectSlot(first, second, fingerprint, now);
+            long current = slots.get(index);
+            long arrival = Math.max(current & TIME_MASK, now) + emissionIntervalMillis;
+            long wait = arrival - now - burstToleranceMillis;
+            if (wait > 0) {
+                return wait;
+            }
+            // A shared slot keeps the fingerprint of its owner, so sharing never hands the owner a fresh bucket
+            long owner = isAvailable(current, fingerprint, now) ? fingerprint : current >>> TIME_BITS;
+            if (slots.compareAndSet(index, current, (owner << TIME_BITS) | arrival)) {
+                return 0;
+            }
+        }
+    }
+
+    private int selectSlot(int first, int second, long fingerprint, long now) {
+        long firstSlot = slots.get(first);
+        if (firstSlot >>> TIME_BITS == fingerprint) {
+            return first;
+        }
+        long secondSlot = slots.get(second);
+        if (secondSlot >>> TIME_BITS == fingerprint) {
+            return second;
+        }
+        if (isAvailable(firstSlot, fingerprint, now)) {
+            return first;
+        }
+        if (isAvailable(secondSlot, fingerprint, now)) {
+            return second;
+        }
+        return first;
+    }
+
+    private static boolean isAvailable(long slot, long fingerprint, long now) {
+        return slot >>> TIME_BITS == fingerprint || (slot & TIME_MASK) <= now;
+    }
+}
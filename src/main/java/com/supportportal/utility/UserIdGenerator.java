@@ -0,0 +1,10 @@
+package com.supportportal.utility;
+
+/**
+ * Produces the public {@code userId} of new users. Ids must be unique; implementations that
+ * hand them out in increasing order keep inserts at the end of the index on the column.
+ */
+public interface UserIdGenerator {
+
+    String generateUserId();
+}
@@ -0,0 +1,118 @@
+package com.supportportal.utility;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.supportportal.domain.User;
+import com.supportportal.domain.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Bounded cache of the users behind authentication, keyed by username. Entries are copies:
+ * callers get their own detached {@link User} and may change it without affecting the cache.
+ * <p>
+ * Every change to a cached user must go through {@link #removeUserFromCache(String)}, which
+ * evicts right away and once more after the surrounding transaction commits, so a login
+ * racing with the change cannot put the old row back. Entries also expire after a fixed time,
+ * which bounds staleness when another instance changed the user.
+ */
+@Component
+public class UserPrincipalCache implements UserCache {
+
+    public static final String CACHE_NAME = "user.principals";
+
+    private final Cache<String, User> cache;
+
+    public UserPrincipalCache(@Value("${user-cache.maximum-size:10000}") long maximumSize,
+                              @Value("${user-cache.expire-after-write-ms:60000}") long expireAfterWriteMillis,
+                              MeterRegistry meterRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMillis, MILLISECONDS)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public UserPrincipal getUserFromCache(String username) {
+        User user = cache.getIfPresent(username);
+        return user == null ? null : new UserPrincipal(copyOf(user));
+    }
+
+    /**
+     * Returns a copy of the cached user, or loads, caches and returns a copy of it. The loaded
+     * entity itself is never handed out, so it may stay managed by the caller's persistence
+     * context without ever being changed through the copy.
+     */
+    public UserPrincipal getOrLoad(String username, Function<String, User> loader) {
+        User user = cache.getIfPresent(username);
+        if (user == null) {
+            User loaded = loader.apply(username);
+            if (loaded == null) {
+                return null;
+            }
+            user = copyOf(loaded);
+            cache.put(username, user);
+        }
+        return new UserPrincipal(copyOf(user));
+    }
+
+    @Override
+    public void putUserInCache(UserDetails userDetails) {
+        if (userDetails instanceof UserPrincipal) {
+            User user = ((UserPrincipal) userDetails).getUser();
+            cache.put(user.getUsername(), copyOf(user));
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        cache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(username);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evicts every given user, like {@link #removeUserFromCache(String)} does for one.
+     */
+    public void removeUsersFromCache(Collection<String> usernames) {
+        cache.invalidateAll(usernames);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidateAll(usernames);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+}
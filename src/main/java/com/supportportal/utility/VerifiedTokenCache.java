@@ -0,0 +1,92 @@
+package com.supportportal.utility;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.supportportal.constant.SecurityConstant;
+import com.supportportal.domain.VerifiedToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Bounded cache of tokens that already passed verification. Entries are keyed by a SHA-256
+ * digest of the token, so the raw bearer token is never kept in memory, and an entry is only
+ * served until the token's own expiry.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    public static final String CACHE_NAME = "jwt.verified-tokens";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(VerifiedTokenCache::newDigest);
+    private final boolean enabled;
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.cache.maximum-size:10000}") long maximumSize,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(SecurityConstant.EXPIRATION_TIME, MILLISECONDS)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached claims of the token, or runs the verification and caches its result.
+     * Exceptions thrown by the verification are propagated and nothing is cached.
+     */
+    public VerifiedToken getOrVerify(String token, Function<String, VerifiedToken> verification) {
+        if (!enabled) {
+            return verification.apply(token);
+        }
+        String key = digest(token);
+        VerifiedToken verifiedToken = cache.getIfPresent(key);
+        if (verifiedToken != null) {
+            if (!isExpired(verifiedToken)) {
+                return verifiedToken;
+            }
+            cache.invalidate(key);
+        }
+        verifiedToken = verification.apply(token);
+        cache.put(key, verifiedToken);
+        return verifiedToken;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private boolean isExpired(VerifiedToken verifiedToken) {
+        Date expiresAt = verifiedToken.getExpiresAt();
+        return expiresAt == null || expiresAt.before(new Date());
+    }
+
+    private String digest(String token) {
+        MessageDigest messageDigest = digest.get();
+        messageDigest.reset();
+        byte[] hash = messageDigest.digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+}
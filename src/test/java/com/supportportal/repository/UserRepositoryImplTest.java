@@ -0,0 +1,84 @@
+package com.supportportal.repository;
+
+import com.supportportal.domain.User;
+import com.supportportal.domain.UserSortOrder;
+import com.supportportal.enumeration.UserField;
+import com.supportportal.utility.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class UserRepositoryImplTest {
+
+    private static final int PAGE_SIZE = 4;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Few distinct values and plenty of nulls, so pages end inside groups of equal values and
+    // inside the null tail
+    @BeforeEach
+    void createUsers() {
+        String[] firstNames = {"Ann", "Bob", null};
+        String[] lastNames = {"Smith", null, "Jones", "Brown"};
+        List<User> users = new ArrayList<>();
+        for (int index = 0; index < 37; index++) {
+            User user = new User();
+            user.setUserId("page-" + index);
+            user.setUsername("page" + index);
+            user.setEmail("page" + index + "@example.com");
+            user.setFirstName(firstNames[index % firstNames.length]);
+            user.setLastName(lastNames[index % lastNames.length]);
+            user.setJoinDate(index % 5 == 0 ? null : new Date(1_600_000_000_000L + index % 3 * 86_400_000L));
+            user.setRole("ROLE_USER");
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+        userRepository.flush();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"firstName", "-firstName", "firstName,-lastName", "-lastName,joinDate", "-joinDate,firstName,lastName"})
+    void everyPageOfANullableSortContinuesWhereTheLastOneEnded(String sort) throws Exception {
+        List<UserSortOrder> sortOrders = KeysetCursor.parseSort(sort);
+        List<Long> ids = new ArrayList<>();
+        Object[] after = null;
+        while (true) {
+            List<Map<String, Object>> page = userRepository.findUserPage(sortOrders, after, PAGE_SIZE, EnumSet.of(UserField.USERNAME));
+            page.forEach(row -> ids.add((Long) row.get("id")));
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            after = KeysetCursor.decode(KeysetCursor.encode(sortOrders, page.get(page.size() - 1)), sortOrders);
+        }
+
+        List<Long> allIds = userRepository.findAll().stream().map(User::getId).collect(Collectors.toList());
+        assertThat(ids).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(allIds);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"firstName", "-firstName"})
+    void usersWithoutTheSortValueComeLast(String sort) throws Exception {
+        List<Map<String, Object>> rows = userRepository.findUserPage(KeysetCursor.parseSort(sort), null, 1000, EnumSet.of(UserField.USERNAME));
+
+        int firstNull = 0;
+        while (rows.get(firstNull).get("firstName") != null) {
+            firstNull++;
+        }
+        assertThat(rows.subList(firstNull, rows.size())).allMatch(row -> row.get("firstName") == null);
+    }
+}
@@ -0,0 +1,123 @@
+package com.supportportal.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryLoginAttemptStoreTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void concurrentFailuresAreNeverLost() throws Exception {
+        InMemoryLoginAttemptStore loginAttemptStore = new InMemoryLoginAttemptStore(1_000_000, clock);
+        int threads = 16;
+        int usernames = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int username = 0; username < usernames; username++) {
+                    loginAttemptStore.recordFailure("user" + username);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, SECONDS);
+        }
+        executor.shutdown();
+
+        for (int username = 0; username < usernames; username++) {
+            assertThat(loginAttemptStore.getAttempts("user" + username)).isEqualTo(threads);
+        }
+    }
+
+    @Test
+    void failuresSlideOutOfTheWindow() {
+        InMemoryLoginAttemptStore loginAttemptStore = new InMemoryLoginAttemptStore(1_000_000, clock);
+        for (int attempt = 0; attempt < 3; attempt++) {
+            loginAttemptStore.recordFailure("alice");
+        }
+        clock.advance(MINUTES.toMillis(8));
+        loginAttemptStore.recordFailure("alice");
+        loginAttemptStore.recordFailure("alice");
+        assertThat(loginAttemptStore.getAttempts("alice")).isGreaterThanOrEqualTo(5);
+
+        clock.advance(MINUTES.toMillis(8));
+        assertThat(loginAttemptStore.getAttempts("alice")).isEqualTo(2);
+
+        clock.advance(MINUTES.toMillis(16));
+        assertThat(loginAttemptStore.getAttempts("alice")).isZero();
+        loginAttemptStore.evictExpiredAttempts();
+        assertThat(loginAttemptStore.getTrackedUsernames()).isZero();
+    }
+
+    @Test
+    void resetClearsTheCounter() {
+        InMemoryLoginAttemptStore loginAttemptStore = new InMemoryLoginAttemptStore(1_000_000, clock);
+        for (int attempt = 0; attempt < 5; attempt++) {
+            loginAttemptStore.recordFailure("bob");
+        }
+        loginAttemptStore.reset("bob");
+        assertThat(loginAttemptStore.getAttempts("bob")).isZero();
+    }
+
+    @Test
+    void sprayingUsernamesDoesNotEvictBruteForcedAccounts() {
+        InMemoryLoginAttemptStore loginAttemptStore = new InMemoryLoginAttemptStore(1_000, clock);
+        for (int attempt = 0; attempt < 5; attempt++) {
+            loginAttemptStore.recordFailure("victim");
+        }
+        for (int username = 0; username < 100_000; username++) {
+            loginAttemptStore.recordFailure("sprayed" + username);
+        }
+        assertThat(loginAttemptStore.getTrackedUsernames()).isLessThanOrEqualTo(1_000);
+        assertThat(loginAttemptStore.getAttempts("victim")).isGreaterThanOrEqualTo(5);
+    }
+
+    private static class MutableClock extends Clock {
+        private final AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+
+        void advance(long delta) {
+            millis.addAndGet(delta);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
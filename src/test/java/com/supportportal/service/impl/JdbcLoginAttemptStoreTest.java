@@ -0,0 +1,109 @@
+package com.supportportal.service.impl;
+
+import com.supportportal.service.LoginAttemptService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The scheduled flush never runs during a test, the tests flush when they need to
+@SpringBootTest(properties = {"login-attempt.store=jdbc", "login-attempt.jdbc.flush-interval-ms=3600000"})
+class JdbcLoginAttemptStoreTest {
+
+    @Autowired
+    private JdbcLoginAttemptStore loginAttemptStore;
+
+    @Autowired
+    private LoginAttemptService loginAttemptService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void deleteAttempts() {
+        jdbcTemplate.update("delete from login_attempt");
+    }
+
+    @Test
+    void pendingFailuresCountBeforeAndAfterTheFlush() {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            loginAttemptService.addUserToLoginAttemptCache("alice");
+        }
+        assertThat(loginAttemptStore.getAttempts("alice")).isEqualTo(3);
+        assertThat(storedAttempts("alice")).isZero();
+
+        loginAttemptStore.flush();
+        assertThat(storedAttempts("alice")).isEqualTo(3);
+        assertThat(loginAttemptStore.getAttempts("alice")).isEqualTo(3);
+
+        loginAttemptService.addUserToLoginAttemptCache("alice");
+        loginAttemptService.addUserToLoginAttemptCache("alice");
+        assertThat(loginAttemptService.hasExceededMaxAttempts("alice")).isTrue();
+    }
+
+    @Test
+    void failuresAreSharedBetweenInstances() {
+        JdbcLoginAttemptStore otherInstance = new JdbcLoginAttemptStore(jdbcTemplate, 100_000);
+        for (int attempt = 0; attempt < 3; attempt++) {
+            otherInstance.recordFailure("bob");
+        }
+        otherInstance.flush();
+        loginAttemptService.addUserToLoginAttemptCache("bob");
+        loginAttemptService.addUserToLoginAttemptCache("bob");
+
+        assertThat(loginAttemptService.hasExceededMaxAttempts("bob")).isTrue();
+        assertThat(otherInstance.getAttempts("bob")).isEqualTo(3);
+    }
+
+    @Test
+    void resetDeletesSharedAndPendingFailures() {
+        JdbcLoginAttemptStore otherInstance = new JdbcLoginAttemptStore(jdbcTemplate, 100_000);
+        for (int attempt = 0; attempt < 5; attempt++) {
+            otherInstance.recordFailure("carol");
+        }
+        otherInstance.flush();
+        loginAttemptService.addUserToLoginAttemptCache("carol");
+
+        loginAttemptService.evictUserFromLoginAttemptCache("carol");
+        assertThat(loginAttemptStore.getAttempts("carol")).isZero();
+        assertThat(storedAttempts("carol")).isZero();
+    }
+
+    @Test
+    void failuresExpireAfterTheWindow() {
+        for (int attempt = 0; attempt < 5; attempt++) {
+            loginAttemptStore.recordFailure("dave");
+        }
+        loginAttemptStore.flush();
+
+        Clock later = Clock.offset(Clock.systemUTC(), Duration.ofMinutes(16));
+        JdbcLoginAttemptStore laterInstance = new JdbcLoginAttemptStore(jdbcTemplate, later, 100_000);
+        assertThat(laterInstance.getAttempts("dave")).isZero();
+        laterInstance.evictExpiredAttempts();
+        assertThat(storedAttempts("dave")).isZero();
+    }
+
+    @Test
+    void pendingUsernamesAreCappedWhileFailuresCannotBeFlushed() {
+        JdbcLoginAttemptStore unflushedInstance = new JdbcLoginAttemptStore(jdbcTemplate, Clock.systemUTC(), 100);
+        for (int attempt = 0; attempt < 5; attempt++) {
+            unflushedInstance.recordFailure("erin");
+        }
+        for (int username = 0; username < 10_000; username++) {
+            unflushedInstance.recordFailure("sprayed" + username);
+        }
+        assertThat(unflushedInstance.getPendingUsernames()).isLessThanOrEqualTo(100);
+        assertThat(unflushedInstance.getAttempts("erin")).isEqualTo(5);
+    }
+
+    private int storedAttempts(String username) {
+        return jdbcTemplate.queryForObject(
+                "select coalesce(sum(attempts), 0) from login_attempt where username = ?", Integer.class, username);
+    }
+}
@@ -0,0 +1,101 @@
+package com.supportportal.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUserIdGeneratorTest {
+
+    @Test
+    void idsSortInGenerationOrderWithinTheSameMillisecond() {
+        Clock clock = Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC);
+        TimeOrderedUserIdGenerator generator = new TimeOrderedUserIdGenerator(clock);
+        String previous = generator.generateUserId();
+        for (int id = 0; id < 100_000; id++) {
+            String next = generator.generateUserId();
+            assertThat(next).hasSize(TimeOrderedUserIdGenerator.LENGTH).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void idsKeepIncreasingWhenTheClockStepsBack() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:10Z").toEpochMilli());
+        TimeOrderedUserIdGenerator generator = new TimeOrderedUserIdGenerator(clock);
+        String beforeStep = generator.generateUserId();
+        clock.millis = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+        assertThat(generator.generateUserId()).isGreaterThan(beforeStep);
+    }
+
+    @Test
+    void concurrentIdsAreUnique() throws Exception {
+        TimeOrderedUserIdGenerator generator = new TimeOrderedUserIdGenerator();
+        int threads = 8;
+        int idsPerThread = 50_000;
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                String previous = "";
+                for (int id = 0; id < idsPerThread; id++) {
+                    String next = generator.generateUserId();
+                    assertThat(next).isGreaterThan(previous);
+                    ids.add(next);
+                    previous = next;
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, SECONDS);
+        }
+        executor.shutdown();
+        assertThat(ids).hasSize(threads * idsPerThread);
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}